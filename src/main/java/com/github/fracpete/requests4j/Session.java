@@ -1,29 +1,50 @@
 /*
  * Session.java
- * Copyright (C) 2019-2020 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2019-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.requests4j;
 
 import com.github.fracpete.requests4j.auth.AbstractAuthentication;
 import com.github.fracpete.requests4j.auth.NoAuthentication;
+import com.github.fracpete.requests4j.cache.MemoryCache;
+import com.github.fracpete.requests4j.cache.RequestCoalescer;
+import com.github.fracpete.requests4j.core.CacheStatistics;
+import com.github.fracpete.requests4j.core.VirtualThreads;
 import com.github.fracpete.requests4j.event.RequestExecutionEvent;
 import com.github.fracpete.requests4j.event.RequestExecutionListener;
 import com.github.fracpete.requests4j.event.RequestFailureEvent;
 import com.github.fracpete.requests4j.event.RequestFailureListener;
+import com.github.fracpete.requests4j.event.ServerSentEventListener;
+import com.github.fracpete.requests4j.request.BulkExecution;
+import com.github.fracpete.requests4j.request.EventSource;
+import com.github.fracpete.requests4j.request.HedgingPolicy;
 import com.github.fracpete.requests4j.request.Request;
+import com.github.fracpete.requests4j.request.RetryPolicy;
+import com.github.fracpete.requests4j.response.BasicResponse;
 import com.github.fracpete.requests4j.response.Response;
 import okhttp3.Authenticator;
+import okhttp3.Cache;
+import okhttp3.Dispatcher;
 import okhttp3.JavaNetCookieJar;
 import okhttp3.OkHttpClient;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Session object for making requests, maintains client/cookies and adds them automatically
@@ -34,6 +55,12 @@ import java.util.concurrent.TimeUnit;
 public class Session
   implements Serializable, RequestExecutionListener, RequestFailureListener {
 
+  /** the default maximum number of concurrent requests (OkHttp's default). */
+  public final static int DEFAULT_MAX_REQUESTS = 64;
+
+  /** the default maximum number of concurrent requests per host (OkHttp's default). */
+  public final static int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+
   /** the client. */
   protected OkHttpClient m_Client;
 
@@ -61,6 +88,45 @@ public class Session
   /** the maximum number of redirects. */
   protected int m_MaxRedirects;
 
+  /** whether to use virtual threads. */
+  protected boolean m_VirtualThreads;
+
+  /** the maximum number of concurrent requests (dispatcher). */
+  protected int m_MaxRequests;
+
+  /** the maximum number of concurrent requests per host (dispatcher). */
+  protected int m_MaxRequestsPerHost;
+
+  /** the executor for the virtual threads. */
+  protected transient ExecutorService m_Executor;
+
+  /** the directory for the HTTP cache, null if no caching. */
+  protected File m_CacheDir;
+
+  /** the maximum size of the HTTP cache in bytes. */
+  protected long m_CacheSize;
+
+  /** the HTTP cache. */
+  protected transient Cache m_Cache;
+
+  /** the dispatchers of the clients using the HTTP cache. */
+  protected transient List<Dispatcher> m_CacheDispatchers;
+
+  /** the statistics of the HTTP cache. */
+  protected transient CacheStatistics m_CacheStatistics;
+
+  /** the in-memory cache. */
+  protected transient MemoryCache m_MemoryCache;
+
+  /** for collapsing identical requests. */
+  protected transient RequestCoalescer m_Coalescer;
+
+  /** the hedging policy, null if not hedging. */
+  protected HedgingPolicy m_HedgingPolicy;
+
+  /** the retry policy, null if not retrying. */
+  protected RetryPolicy m_RetryPolicy;
+
   /**
    * Initializes the session with default values.
    */
@@ -73,6 +139,12 @@ public class Session
     m_WriteTimeout    = -1;
     m_AllowRedirects  = false;
     m_MaxRedirects    = 3;
+    m_VirtualThreads     = false;
+    m_MaxRequests        = -1;
+    m_MaxRequestsPerHost = -1;
+    m_Executor           = null;
+    m_CacheDir           = null;
+    m_CacheSize          = -1;
   }
 
   /**
@@ -213,6 +285,269 @@ public class Session
     return m_MaxRedirects;
   }
 
+  /**
+   * Sets whether to use virtual threads (Java 21+) for executing requests
+   * asynchronously. Falls back to OkHttp's default thread pool if virtual
+   * threads are not supported by the JVM. When switching them off, the
+   * virtual thread executor gets shut down once the requests that it is
+   * still executing have finished.
+   *
+   * @param value	true if to use virtual threads
+   * @return		itself
+   * @see		VirtualThreads#isSupported()
+   */
+  public synchronized Session virtualThreads(boolean value) {
+    if (value == m_VirtualThreads)
+      return this;
+    m_VirtualThreads = value;
+    if (!value && (m_Executor != null)) {
+      m_Executor.shutdown();
+      m_Executor = null;
+    }
+    m_Client = null;
+    return this;
+  }
+
+  /**
+   * Returns whether to use virtual threads (if supported).
+   *
+   * @return		true if to use virtual threads
+   */
+  public boolean virtualThreads() {
+    return m_VirtualThreads;
+  }
+
+  /**
+   * Sets the maximum number of requests to execute concurrently
+   * (asynchronous execution only).
+   *
+   * @param value	the maximum, use -1 for default (64)
+   * @return		itself
+   */
+  public synchronized Session maxRequests(int value) {
+    if (value < 1)
+      value = -1;
+    m_MaxRequests = value;
+    if (m_Client != null)
+      m_Client.dispatcher().setMaxRequests((m_MaxRequests == -1) ? DEFAULT_MAX_REQUESTS : m_MaxRequests);
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of requests to execute concurrently.
+   *
+   * @return		the maximum, -1 for default (64)
+   */
+  public int maxRequests() {
+    return m_MaxRequests;
+  }
+
+  /**
+   * Sets the maximum number of requests to execute concurrently per host
+   * (asynchronous execution only).
+   *
+   * @param value	the maximum, use -1 for default (5)
+   * @return		itself
+   */
+  public synchronized Session maxRequestsPerHost(int value) {
+    if (value < 1)
+      value = -1;
+    m_MaxRequestsPerHost = value;
+    if (m_Client != null)
+      m_Client.dispatcher().setMaxRequestsPerHost((m_MaxRequestsPerHost == -1) ? DEFAULT_MAX_REQUESTS_PER_HOST : m_MaxRequestsPerHost);
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of requests to execute concurrently per host.
+   *
+   * @return		the maximum, -1 for default (5)
+   */
+  public int maxRequestsPerHost() {
+    return m_MaxRequestsPerHost;
+  }
+
+  /**
+   * Enables the HTTP cache (RFC 7234), storing cacheable responses on disk.
+   * Honors Cache-Control, Expires and Vary, revalidates stale responses
+   * using ETag/Last-Modified and evicts the least recently used responses
+   * once the maximum size has been reached.
+   *
+   * @param dir		the directory for storing the responses
+   * @param maxSize	the maximum size in bytes
+   * @return		itself
+   * @see		#cacheStatistics()
+   */
+  public synchronized Session cache(File dir, long maxSize) {
+    if (maxSize < 1)
+      throw new IllegalArgumentException("Maximum cache size must be at least 1, provided: " + maxSize);
+    closeCache();
+    m_CacheDir  = dir;
+    m_CacheSize = maxSize;
+    m_Client    = null;
+    return this;
+  }
+
+  /**
+   * Disables the HTTP cache.
+   *
+   * @return		itself
+   */
+  public synchronized Session noCache() {
+    closeCache();
+    m_CacheDir  = null;
+    m_CacheSize = -1;
+    m_Client    = null;
+    return this;
+  }
+
+  /**
+   * Returns the HTTP cache.
+   *
+   * @return		the cache, null if not enabled
+   */
+  public synchronized Cache cache() {
+    client();
+    return m_Cache;
+  }
+
+  /**
+   * Returns the statistics of the HTTP cache, i.e., hits, misses and revalidations.
+   *
+   * @return		the statistics
+   */
+  public synchronized CacheStatistics cacheStatistics() {
+    if (m_CacheStatistics == null)
+      m_CacheStatistics = new CacheStatistics();
+    return m_CacheStatistics;
+  }
+
+  /**
+   * Sets the in-memory cache for small, frequently requested responses.
+   * Gets consulted before the HTTP cache and the network.
+   *
+   * @param value	the cache, null to remove
+   * @return		itself
+   */
+  public synchronized Session memoryCache(MemoryCache value) {
+    m_MemoryCache = value;
+    m_Client      = null;
+    return this;
+  }
+
+  /**
+   * Returns the in-memory cache.
+   *
+   * @return		the cache, null if none
+   */
+  public synchronized MemoryCache memoryCache() {
+    return m_MemoryCache;
+  }
+
+  /**
+   * Sets the coalescer that collapses concurrent identical GET/HEAD requests
+   * into a single call. Gets consulted after the in-memory cache.
+   *
+   * @param value	the coalescer, null to remove
+   * @return		itself
+   */
+  public synchronized Session coalescer(RequestCoalescer value) {
+    m_Coalescer = value;
+    m_Client    = null;
+    return this;
+  }
+
+  /**
+   * Returns the coalescer for identical requests.
+   *
+   * @return		the coalescer, null if none
+   */
+  public synchronized RequestCoalescer coalescer() {
+    return m_Coalescer;
+  }
+
+  /**
+   * Sets the hedging policy for safe requests (GET, HEAD, OPTIONS) of
+   * this session. The policy (latencies, budget) is shared by all requests.
+   *
+   * @param value	the policy, null to disable hedging
+   * @return		itself
+   * @see		Request#hedging(HedgingPolicy)
+   */
+  public Session hedging(HedgingPolicy value) {
+    m_HedgingPolicy = value;
+    return this;
+  }
+
+  /**
+   * Returns the hedging policy.
+   *
+   * @return		the policy, null if not hedging
+   */
+  public HedgingPolicy hedging() {
+    return m_HedgingPolicy;
+  }
+
+  /**
+   * Sets the retry policy of this session. The policy (budget) is shared
+   * by all requests.
+   *
+   * @param value	the policy, null to disable retries
+   * @return		itself
+   * @see		Request#retry(RetryPolicy)
+   */
+  public Session retry(RetryPolicy value) {
+    m_RetryPolicy = value;
+    return this;
+  }
+
+  /**
+   * Returns the retry policy.
+   *
+   * @return		the policy, null if not retrying
+   */
+  public RetryPolicy retry() {
+    return m_RetryPolicy;
+  }
+
+  /**
+   * Closes the HTTP cache, if any. Clients created earlier (and the requests
+   * using them) may still be executing calls, i.e., the cache only gets
+   * closed once the dispatchers of all these clients are idle.
+   */
+  protected synchronized void closeCache() {
+    final Cache			cache;
+    final File			dir;
+    final List<Dispatcher>	dispatchers;
+    Runnable			closer;
+
+    if (m_Cache == null)
+      return;
+
+    cache              = m_Cache;
+    dir                = m_CacheDir;
+    dispatchers        = (m_CacheDispatchers == null) ? new ArrayList<>() : m_CacheDispatchers;
+    m_Cache            = null;
+    m_CacheDispatchers = null;
+
+    closer = () -> {
+      for (Dispatcher dispatcher: dispatchers) {
+	if (dispatcher.runningCallsCount() > 0)
+	  return;
+      }
+      try {
+	cache.close();
+      }
+      catch (IOException e) {
+	System.err.println("Failed to close cache: " + dir);
+	e.printStackTrace();
+      }
+    };
+    for (Dispatcher dispatcher: dispatchers)
+      dispatcher.setIdleCallback(closer);
+    closer.run();
+  }
+
   /**
    * Sets the cookies and adds itself as execution listener to the request.
    *
@@ -225,6 +560,10 @@ public class Session
     request.auth(auth());
     request.allowRedirects(allowRedirects());
     request.maxRedirects(maxRedirects());
+    if (hedging() != null)
+      request.hedging(hedging());
+    if (retry() != null)
+      request.retry(retry());
     return request;
   }
 
@@ -260,10 +599,22 @@ public class Session
   public synchronized OkHttpClient client() {
     OkHttpClient.Builder	builder;
     Authenticator		authenticator;
+    Dispatcher			dispatcher;
 
     if (m_Client == null) {
+      if (m_VirtualThreads && (m_Executor == null))
+        m_Executor = VirtualThreads.newExecutor();
+      if (m_Executor != null)
+        dispatcher = new Dispatcher(m_Executor);
+      else
+        dispatcher = new Dispatcher();
+      if (m_MaxRequests != -1)
+        dispatcher.setMaxRequests(m_MaxRequests);
+      if (m_MaxRequestsPerHost != -1)
+        dispatcher.setMaxRequestsPerHost(m_MaxRequestsPerHost);
       builder = new OkHttpClient.Builder()
-        .cookieJar(new JavaNetCookieJar(cookies()));
+        .cookieJar(new JavaNetCookieJar(cookies()))
+        .dispatcher(dispatcher);
       if (m_ConnectTimeout != -1)
         builder.connectTimeout(m_ConnectTimeout, TimeUnit.SECONDS);
       if (m_ReadTimeout != -1)
@@ -272,6 +623,19 @@ public class Session
         builder.writeTimeout(m_WriteTimeout, TimeUnit.SECONDS);
       if (m_Proxy != null)
         builder.proxy(m_Proxy);
+      if (m_CacheDir != null) {
+        if (m_Cache == null) {
+          m_Cache            = new Cache(m_CacheDir, m_CacheSize);
+          m_CacheDispatchers = new ArrayList<>();
+        }
+        m_CacheDispatchers.add(dispatcher);
+        builder.cache(m_Cache);
+        builder.eventListener(cacheStatistics());
+      }
+      if (m_MemoryCache != null)
+        builder.addInterceptor(m_MemoryCache);
+      if (m_Coalescer != null)
+        builder.addInterceptor(m_Coalescer);
       try {
 	authenticator = auth().build();
 	if (authenticator != null)
@@ -514,9 +878,136 @@ public class Session
   }
 
   /**
-   * Closes the client, if necessary.
+   * Executes the request asynchronously using this session's client and cookies.
+   *
+   * @param request	the request to execute
+   * @return		the future response
+   * @see		Request#executeAsync()
+   */
+  public CompletableFuture<BasicResponse> executeAsync(Request request) {
+    return process(request).executeAsync();
+  }
+
+  /**
+   * Executes the request asynchronously using this session's client and cookies.
+   *
+   * @param request	the request to execute
+   * @param response	the response object to initialize
+   * @return		the future response
+   * @see		Request#executeAsync(Response)
+   */
+  public <T extends Response> CompletableFuture<T> executeAsync(Request request, T response) {
+    return process(request).executeAsync(response);
+  }
+
+  /**
+   * Executes the request in a blocking fashion on one of the session's
+   * dispatcher threads, i.e., virtual threads if enabled and supported.
+   *
+   * @param request	the request to execute
+   * @return		the future response
+   * @see		#virtualThreads(boolean)
    */
-  public void close() {
+  public CompletableFuture<BasicResponse> submit(Request request) {
+    return submit(request, new BasicResponse());
+  }
+
+  /**
+   * Executes the request in a blocking fashion on one of the session's
+   * dispatcher threads, i.e., virtual threads if enabled and supported.
+   *
+   * @param request	the request to execute
+   * @param response	the response object to initialize
+   * @return		the future response
+   * @see		#virtualThreads(boolean)
+   */
+  public <T extends Response> CompletableFuture<T> submit(Request request, T response) {
+    final Request	processed;
+
+    processed = process(request);
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+	return processed.execute(response);
+      }
+      catch (Exception e) {
+	throw new CompletionException(e);
+      }
+    }, client().dispatcher().executorService());
+  }
+
+  /**
+   * Executes all the requests asynchronously using this session's client,
+   * with at most the specified number of requests in flight. The successful
+   * executions can be retrieved in order of completion via the returned
+   * iterator, failures get sent to the failure listeners of the returned
+   * execution object. As a request only counts as finished once its result
+   * has been retrieved, the number of buffered responses is bounded as well.
+   *
+   * @param requests		the requests to execute
+   * @param factory		for creating the response objects
+   * @param maxConcurrency	the maximum number of requests in flight
+   * @return			the started execution
+   * @see			#maxRequestsPerHost(int)
+   */
+  public BulkExecution executeAll(Collection<Request> requests, Supplier<? extends Response> factory, int maxConcurrency) {
+    return new BulkExecution(requests, this::process, factory, maxConcurrency, true).start();
+  }
+
+  /**
+   * Executes all the requests asynchronously using this session's client,
+   * with at most the specified number of requests in flight. Results are
+   * passed on to the listeners as they come in.
+   *
+   * @param requests		the requests to execute
+   * @param factory		for creating the response objects
+   * @param maxConcurrency	the maximum number of requests in flight
+   * @param executionListener	the listener for successful executions, can be null
+   * @param failureListener	the listener for failed executions, can be null
+   * @return			the started execution
+   * @see			BulkExecution#waitFor()
+   */
+  public BulkExecution executeAll(Collection<Request> requests, Supplier<? extends Response> factory, int maxConcurrency, RequestExecutionListener executionListener, RequestFailureListener failureListener) {
+    BulkExecution	result;
+
+    result = new BulkExecution(requests, this::process, factory, maxConcurrency, false);
+    if (executionListener != null)
+      result.addExecutionListener(executionListener);
+    if (failureListener != null)
+      result.addFailureListener(failureListener);
+
+    return result.start();
+  }
+
+  /**
+   * Opens a stream of Server-Sent Events using this session's client and cookies.
+   * With virtual threads enabled, each open stream only occupies a virtual thread.
+   *
+   * @param request	the GET request for the stream
+   * @param listener	the listener for the events
+   * @return		the opened event source, needs closing
+   * @see		#virtualThreads(boolean)
+   */
+  public EventSource eventSource(Request request, ServerSentEventListener listener) {
+    return new EventSource(process(request))
+      .addEventListener(listener)
+      .open();
+  }
+
+  /**
+   * Closes the client, if necessary.
+   * Shuts down the virtual thread executor and closes the HTTP cache, if any,
+   * once the calls still using it have finished.
+   */
+  public synchronized void close() {
+    if (m_Executor != null) {
+      m_Executor.shutdown();
+      m_Executor = null;
+      m_Client   = null;
+    }
+    if (m_Cache != null) {
+      closeCache();
+      m_Client = null;
+    }
   }
 
   /**
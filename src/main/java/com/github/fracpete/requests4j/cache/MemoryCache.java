@@ -0,0 +1,593 @@
+/*
+ * MemoryCache.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.cache;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache for small, frequently requested responses (application
+ * interceptor). Successful GET responses are stored as immutable
+ * {@link Snapshot} objects, keyed by method, URL and the request headers
+ * listed in the response's Vary header (one variant per URL, the most recent
+ * one is kept). Every hit gets its own response
+ * object, i.e., snapshots can be shared safely across threads.
+ * <br>
+ * Entries expire after the time-to-live (or the response's max-age, if
+ * shorter). Within the stale-while-revalidate window after expiry, the
+ * stale snapshot gets served while a single refresh happens in the
+ * background. The least recently used entries get evicted once the total
+ * weight (estimated memory) exceeds the maximum.
+ * <br>
+ * Responses get stored once their body has been read completely by the
+ * caller (i.e., without delaying or buffering streamed responses) and only
+ * if the body does not exceed the maximum entry weight.
+ * <br>
+ * Responses with Cache-Control no-store/no-cache/private or Vary: * are not
+ * stored. To avoid serving private responses to requests with different
+ * credentials, requests with an Authorization header bypass the cache and
+ * responses to requests that carried credentials added further down the
+ * chain (Authorization header from an authenticator, i.e., after a 401/407,
+ * or cookies from the cookie jar) are not stored either, nor are responses
+ * that set cookies.
+ * Successful non-GET requests (e.g., POST) remove the entry of their URL.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MemoryCache
+  implements Interceptor {
+
+  /** the default maximum weight of a single entry (1MB). */
+  public final static long DEFAULT_MAX_ENTRY_WEIGHT = 1024 * 1024;
+
+  /**
+   * Container for a cached snapshot.
+   */
+  protected static class Entry {
+
+    /** the snapshot. */
+    protected Snapshot m_Snapshot;
+
+    /** the names of the headers the response varies by. */
+    protected List<String> m_VaryNames;
+
+    /** the request's values of these headers. */
+    protected List<String> m_VaryValues;
+
+    /** when the entry expires. */
+    protected long m_ExpiresAt;
+
+    /** until when the entry can be served stale. */
+    protected long m_StaleUntil;
+  }
+
+  /** the maximum total weight in bytes. */
+  protected long m_MaxWeight;
+
+  /** the maximum weight of a single entry in bytes. */
+  protected long m_MaxEntryWeight;
+
+  /** the time-to-live in msec. */
+  protected long m_TimeToLive;
+
+  /** the stale-while-revalidate window in msec. */
+  protected long m_StaleWhileRevalidate;
+
+  /** the entries (in access order). */
+  protected LinkedHashMap<String,Entry> m_Entries;
+
+  /** the current total weight. */
+  protected long m_Weight;
+
+  /** the keys being refreshed. */
+  protected Set<String> m_Refreshing;
+
+  /** the calls for refreshing entries. */
+  protected Set<Call> m_RefreshCalls;
+
+  /** the number of fresh hits. */
+  protected AtomicLong m_Hits;
+
+  /** the number of stale hits. */
+  protected AtomicLong m_StaleHits;
+
+  /** the number of misses. */
+  protected AtomicLong m_Misses;
+
+  /** the number of evictions. */
+  protected AtomicLong m_Evictions;
+
+  /** the number of background refreshes. */
+  protected AtomicLong m_Refreshes;
+
+  /**
+   * Initializes the cache.
+   *
+   * @param maxWeight	the maximum total weight (estimated memory) in bytes
+   * @param timeToLive	the time-to-live of entries in msec
+   */
+  public MemoryCache(long maxWeight, long timeToLive) {
+    if (maxWeight < 1)
+      throw new IllegalArgumentException("Maximum weight must be at least 1, provided: " + maxWeight);
+    m_MaxWeight            = maxWeight;
+    m_MaxEntryWeight       = Math.min(maxWeight, DEFAULT_MAX_ENTRY_WEIGHT);
+    m_TimeToLive           = Math.max(0, timeToLive);
+    m_StaleWhileRevalidate = 0;
+    m_Entries              = new LinkedHashMap<>(16, 0.75f, true);
+    m_Refreshing           = new HashSet<>();
+    m_RefreshCalls         = new HashSet<>();
+    m_Hits                 = new AtomicLong();
+    m_StaleHits            = new AtomicLong();
+    m_Misses               = new AtomicLong();
+    m_Evictions            = new AtomicLong();
+    m_Refreshes            = new AtomicLong();
+  }
+
+  /**
+   * Sets the maximum weight of a single entry. Larger responses don't get cached.
+   *
+   * @param value	the maximum in bytes
+   * @return		itself
+   */
+  public synchronized MemoryCache maxEntryWeight(long value) {
+    if (value < 1)
+      value = 1;
+    m_MaxEntryWeight = Math.min(m_MaxWeight, value);
+    return this;
+  }
+
+  /**
+   * Returns the maximum weight of a single entry.
+   *
+   * @return		the maximum in bytes
+   */
+  public synchronized long maxEntryWeight() {
+    return m_MaxEntryWeight;
+  }
+
+  /**
+   * Sets the window after expiry during which stale entries get served
+   * while refreshing them in the background.
+   *
+   * @param value	the window in msec, 0 to disable
+   * @return		itself
+   */
+  public synchronized MemoryCache staleWhileRevalidate(long value) {
+    m_StaleWhileRevalidate = Math.max(0, value);
+    return this;
+  }
+
+  /**
+   * Returns the stale-while-revalidate window.
+   *
+   * @return		the window in msec
+   */
+  public synchronized long staleWhileRevalidate() {
+    return m_StaleWhileRevalidate;
+  }
+
+  /**
+   * Returns the maximum total weight.
+   *
+   * @return		the maximum in bytes
+   */
+  public long maxWeight() {
+    return m_MaxWeight;
+  }
+
+  /**
+   * Returns the time-to-live of entries.
+   *
+   * @return		the time in msec
+   */
+  public long timeToLive() {
+    return m_TimeToLive;
+  }
+
+  /**
+   * Generates the key for the request.
+   *
+   * @param method	the HTTP method
+   * @param url		the URL
+   * @return		the key
+   */
+  protected String key(String method, HttpUrl url) {
+    return method + " " + url;
+  }
+
+  /**
+   * Returns the request's values for the specified headers.
+   *
+   * @param request	the request to get the values from
+   * @param names	the header names
+   * @return		the values (comma-separated if multiple)
+   */
+  protected List<String> varyValues(Request request, List<String> names) {
+    List<String>	result;
+
+    result = new ArrayList<>();
+    for (String name: names)
+      result.add(String.join(",", request.headers(name)));
+
+    return result;
+  }
+
+  /**
+   * Intercepts the call, serving cached snapshots where possible.
+   *
+   * @param chain	the chain
+   * @return		the response
+   * @throws IOException	if the call fails
+   */
+  @NotNull
+  @Override
+  public Response intercept(@NotNull Chain chain) throws IOException {
+    Request	request;
+    Response	response;
+    String	key;
+    Entry	entry;
+    boolean	refresh;
+    long	now;
+
+    request = chain.request();
+    if (!request.method().equals("GET")) {
+      response = chain.proceed(request);
+      if (response.isSuccessful() && !request.method().equals("HEAD"))
+	remove(request.url());
+      return response;
+    }
+    if (request.cacheControl().noStore() || request.cacheControl().noCache() || (request.header("Authorization") != null))
+      return chain.proceed(request);
+
+    key = key(request.method(), request.url());
+    synchronized (this) {
+      refresh = m_RefreshCalls.remove(chain.call());
+    }
+
+    if (!refresh) {
+      entry = lookup(key, request);
+      now   = System.currentTimeMillis();
+      if ((entry != null) && (now < entry.m_ExpiresAt)) {
+	m_Hits.incrementAndGet();
+	return entry.m_Snapshot.toResponse(request);
+      }
+      if ((entry != null) && (now < entry.m_StaleUntil)) {
+	m_StaleHits.incrementAndGet();
+	refresh(chain.call(), key);
+	return entry.m_Snapshot.toResponse(request);
+      }
+      m_Misses.incrementAndGet();
+    }
+
+    response = chain.proceed(request);
+
+    return store(key, request, response);
+  }
+
+  /**
+   * Returns the entry for the request, if the Vary headers match.
+   *
+   * @param key		the key of the request
+   * @param request	the request
+   * @return		the entry, null if not available
+   */
+  protected synchronized Entry lookup(String key, Request request) {
+    Entry	result;
+
+    result = m_Entries.get(key);
+    if ((result != null) && !result.m_VaryNames.isEmpty() && !result.m_VaryValues.equals(varyValues(request, result.m_VaryNames)))
+      result = null;
+
+    return result;
+  }
+
+  /**
+   * Refreshes the entry in the background, unless already in progress.
+   *
+   * @param call	the call that received the stale entry
+   * @param key		the key of the entry
+   */
+  protected void refresh(Call call, final String key) {
+    Call	refresh;
+
+    synchronized (this) {
+      if (!m_Refreshing.add(key))
+	return;
+      refresh = call.clone();
+      m_RefreshCalls.add(refresh);
+    }
+    m_Refreshes.incrementAndGet();
+
+    refresh.enqueue(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	synchronized (MemoryCache.this) {
+	  m_Refreshing.remove(key);
+	  m_RefreshCalls.remove(call);
+	}
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull Response response) {
+	// consume the body, which stores the snapshot
+	try (Response r = response) {
+	  if (r.body() != null)
+	    r.body().source().readAll(Okio.blackhole());
+	}
+	catch (IOException e) {
+	  // ignored
+	}
+	synchronized (MemoryCache.this) {
+	  m_Refreshing.remove(key);
+	}
+      }
+    });
+  }
+
+  /**
+   * Stores the response once its body has been read, if cacheable.
+   *
+   * @param key		the key of the request
+   * @param request	the request
+   * @param response	the response
+   * @return		the response to return to the caller
+   * @see		Snapshot#tee(Response, long, java.util.function.Consumer)
+   */
+  protected Response store(final String key, Request request, Response response) {
+    CacheControl	cc;
+    final List<String>	names;
+    final List<String>	values;
+    final long		ttl;
+
+    if (response.code() != 200)
+      return response;
+    cc = response.cacheControl();
+    if (cc.noStore() || cc.noCache() || cc.isPrivate())
+      return response;
+    if (hasCredentials(response) || (response.header("Set-Cookie") != null))
+      return response;
+    names = new ArrayList<>();
+    for (String vary: response.headers("Vary")) {
+      for (String name: vary.split(",")) {
+	name = name.trim();
+	if (name.equals("*"))
+	  return response;
+	if (!name.isEmpty())
+	  names.add(name);
+      }
+    }
+    if (cc.maxAgeSeconds() != -1)
+      ttl = Math.min(m_TimeToLive, cc.maxAgeSeconds() * 1000L);
+    else
+      ttl = m_TimeToLive;
+    if (ttl <= 0)
+      return response;
+
+    values = varyValues(request, names);
+    return Snapshot.tee(response, maxEntryWeight(), snapshot -> put(key, snapshot, names, values, ttl));
+  }
+
+  /**
+   * Checks whether credentials were sent to obtain the response, i.e., an
+   * Authorization header or cookies (in the network request) or whether
+   * the server asked for authentication along the way.
+   *
+   * @param response	the response to check
+   * @return		true if credentials were involved
+   */
+  protected boolean hasCredentials(Response response) {
+    Response	prior;
+    Request	network;
+
+    if (response.request().header("Authorization") != null)
+      return true;
+    if (response.networkResponse() != null) {
+      network = response.networkResponse().request();
+      if ((network.header("Authorization") != null) || (network.header("Cookie") != null))
+	return true;
+    }
+    prior = response.priorResponse();
+    while (prior != null) {
+      if ((prior.code() == 401) || (prior.code() == 407))
+	return true;
+      prior = prior.priorResponse();
+    }
+
+    return false;
+  }
+
+  /**
+   * Adds the snapshot to the cache, if not too heavy.
+   *
+   * @param key		the key of the request
+   * @param snapshot	the snapshot to add
+   * @param names	the names of the headers the response varies by
+   * @param values	the request's values of these headers
+   * @param ttl		the time-to-live in msec
+   */
+  protected void put(String key, Snapshot snapshot, List<String> names, List<String> values, long ttl) {
+    Entry	entry;
+    Entry	old;
+
+    if (snapshot.weight() > maxEntryWeight())
+      return;
+
+    entry              = new Entry();
+    entry.m_Snapshot   = snapshot;
+    entry.m_VaryNames  = names;
+    entry.m_VaryValues = values;
+    entry.m_ExpiresAt  = System.currentTimeMillis() + ttl;
+
+    synchronized (this) {
+      entry.m_StaleUntil = entry.m_ExpiresAt + m_StaleWhileRevalidate;
+      old = m_Entries.put(key, entry);
+      if (old != null)
+	m_Weight -= old.m_Snapshot.weight();
+      m_Weight += snapshot.weight();
+      evict();
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries until the total weight is
+   * within the limit.
+   */
+  protected synchronized void evict() {
+    Iterator<Map.Entry<String,Entry>>	iter;
+
+    iter = m_Entries.entrySet().iterator();
+    while ((m_Weight > m_MaxWeight) && iter.hasNext()) {
+      m_Weight -= iter.next().getValue().m_Snapshot.weight();
+      iter.remove();
+      m_Evictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Removes the entry for the URL.
+   *
+   * @param url		the URL to remove
+   */
+  public synchronized void remove(HttpUrl url) {
+    Entry	entry;
+
+    entry = m_Entries.remove(key("GET", url));
+    if (entry != null)
+      m_Weight -= entry.m_Snapshot.weight();
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public synchronized void clear() {
+    m_Entries.clear();
+    m_Weight = 0;
+  }
+
+  /**
+   * Returns the number of entries.
+   *
+   * @return		the number of entries
+   */
+  public synchronized int size() {
+    return m_Entries.size();
+  }
+
+  /**
+   * Returns the current total weight.
+   *
+   * @return		the weight in bytes
+   */
+  public synchronized long weight() {
+    return m_Weight;
+  }
+
+  /**
+   * Returns the number of fresh hits.
+   *
+   * @return		the number of hits
+   */
+  public long hits() {
+    return m_Hits.get();
+  }
+
+  /**
+   * Returns the number of stale hits (served while refreshing).
+   *
+   * @return		the number of hits
+   */
+  public long staleHits() {
+    return m_StaleHits.get();
+  }
+
+  /**
+   * Returns the number of misses.
+   *
+   * @return		the number of misses
+   */
+  public long misses() {
+    return m_Misses.get();
+  }
+
+  /**
+   * Returns the number of evicted entries.
+   *
+   * @return		the number of evictions
+   */
+  public long evictions() {
+    return m_Evictions.get();
+  }
+
+  /**
+   * Returns the number of background refreshes.
+   *
+   * @return		the number of refreshes
+   */
+  public long refreshes() {
+    return m_Refreshes.get();
+  }
+
+  /**
+   * Returns the ratio of (fresh or stale) hits.
+   *
+   * @return		the ratio (0-1), 0 if no requests yet
+   */
+  public double hitRate() {
+    long	hits;
+    long	total;
+
+    hits  = hits() + staleHits();
+    total = hits + misses();
+    if (total == 0)
+      return 0.0;
+    return (double) hits / total;
+  }
+
+  /**
+   * Resets the counters.
+   */
+  public void resetStatistics() {
+    m_Hits.set(0);
+    m_StaleHits.set(0);
+    m_Misses.set(0);
+    m_Evictions.set(0);
+    m_Refreshes.set(0);
+  }
+
+  /**
+   * Returns a short description of the cache.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "size=" + size()
+      + ", weight=" + weight()
+      + ", hits=" + hits()
+      + ", staleHits=" + staleHits()
+      + ", misses=" + misses()
+      + ", evictions=" + evictions()
+      + ", refreshes=" + refreshes()
+      + ", hitRate=" + hitRate();
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * RequestCoalescer.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.cache;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Collapses concurrent identical GET/HEAD requests into a single network
+ * call (application interceptor). The first request of a key performs the
+ * call, the others wait for it and receive their own response, created
+ * from a {@link Snapshot} of the shared response.
+ * <br>
+ * By default, requests are identical if method, URL and all headers
+ * (e.g., Authorization, Accept) are the same. The snapshot only gets taken
+ * if other requests are actually waiting, i.e., a call without followers
+ * gets its response unchanged. If the body of the shared response exceeds
+ * the maximum size or the call got cancelled, the waiting requests perform
+ * their own call. Failures of the shared call are passed on to all waiting
+ * requests. Followers wait at most for the call timeout (or the connect
+ * plus read timeout, if no call timeout is set).
+ * <br>
+ * Event streams (Accept: text/event-stream) and requests with
+ * Cache-Control no-cache/no-store are never collapsed.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class RequestCoalescer
+  implements Interceptor {
+
+  /** the default maximum body size that can be shared (1MB). */
+  public final static long DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+
+  /** the function for generating keys from requests. */
+  protected Function<Request,String> m_KeyFunction;
+
+  /** the maximum body size that can be shared. */
+  protected long m_MaxBodySize;
+
+  /**
+   * A call in flight.
+   */
+  protected static class Flight {
+
+    /** the outcome, null snapshot if followers need to perform their own call. */
+    protected CompletableFuture<Snapshot> m_Outcome = new CompletableFuture<>();
+
+    /** the number of waiting requests. */
+    protected int m_Waiting;
+  }
+
+  /** the calls in flight. */
+  protected Map<String,Flight> m_Flights;
+
+  /** the number of shared calls performed. */
+  protected AtomicLong m_Calls;
+
+  /** the number of requests that were served from another one's call. */
+  protected AtomicLong m_Collapsed;
+
+  /**
+   * Initializes the coalescer with the default key function.
+   *
+   * @see		#defaultKey(Request)
+   */
+  public RequestCoalescer() {
+    this(RequestCoalescer::defaultKey);
+  }
+
+  /**
+   * Initializes the coalescer.
+   *
+   * @param keyFunction	the function for generating keys from requests, identical keys get collapsed
+   */
+  public RequestCoalescer(Function<Request,String> keyFunction) {
+    m_KeyFunction = keyFunction;
+    m_MaxBodySize = DEFAULT_MAX_BODY_SIZE;
+    m_Flights     = new HashMap<>();
+    m_Calls       = new AtomicLong();
+    m_Collapsed   = new AtomicLong();
+  }
+
+  /**
+   * Generates a key from method, URL and all headers.
+   *
+   * @param request	the request to generate the key for
+   * @return		the key
+   */
+  public static String defaultKey(Request request) {
+    return request.method() + " " + request.url() + "\n" + request.headers();
+  }
+
+  /**
+   * Sets the maximum body size that can be shared.
+   *
+   * @param value	the maximum in bytes
+   * @return		itself
+   */
+  public RequestCoalescer maxBodySize(long value) {
+    m_MaxBodySize = Math.max(0, value);
+    return this;
+  }
+
+  /**
+   * Returns the maximum body size that can be shared.
+   *
+   * @return		the maximum in bytes
+   */
+  public long maxBodySize() {
+    return m_MaxBodySize;
+  }
+
+  /**
+   * Checks whether the request can be collapsed with others.
+   *
+   * @param request	the request to check
+   * @return		true if it can be collapsed
+   */
+  protected boolean isCollapsible(Request request) {
+    String	accept;
+
+    if (!request.method().equals("GET") && !request.method().equals("HEAD"))
+      return false;
+    if (request.cacheControl().noCache() || request.cacheControl().noStore())
+      return false;
+    accept = request.header("Accept");
+    if ((accept != null) && accept.contains("text/event-stream"))
+      return false;
+
+    return true;
+  }
+
+  /**
+   * Intercepts the call, collapsing it with an identical one in flight.
+   *
+   * @param chain	the chain
+   * @return		the response
+   * @throws IOException	if the (shared) call fails
+   */
+  @NotNull
+  @Override
+  public Response intercept(@NotNull Chain chain) throws IOException {
+    Request		request;
+    Response		response;
+    String		key;
+    Flight		flight;
+    Snapshot		snapshot;
+    boolean		leader;
+    int			waiting;
+
+    request = chain.request();
+    if (!isCollapsible(request))
+      return chain.proceed(request);
+
+    key = m_KeyFunction.apply(request);
+    synchronized (this) {
+      flight = m_Flights.get(key);
+      leader = (flight == null);
+      if (leader) {
+	flight = new Flight();
+	m_Flights.put(key, flight);
+      }
+      else {
+	flight.m_Waiting++;
+      }
+    }
+
+    // perform the call
+    if (leader) {
+      m_Calls.incrementAndGet();
+      response = null;
+      try {
+	response = chain.proceed(request);
+	// no new followers can join once the flight is removed
+	waiting  = done(key, flight);
+	snapshot = (waiting > 0) ? Snapshot.of(response, m_MaxBodySize) : null;
+      }
+      catch (IOException | RuntimeException e) {
+	if (response != null)
+	  response.close();
+	done(key, flight);
+	if (chain.call().isCanceled())
+	  flight.m_Outcome.complete(null);
+	else
+	  flight.m_Outcome.completeExceptionally(e);
+	throw e;
+      }
+      flight.m_Outcome.complete(snapshot);
+      return response;
+    }
+
+    snapshot = await(chain, flight);
+    if (snapshot == null)
+      return chain.proceed(request);
+
+    m_Collapsed.incrementAndGet();
+    return snapshot.toResponse(request);
+  }
+
+  /**
+   * Waits for the outcome of the flight, bounded by the call timeout (or
+   * connect plus read timeout, if no call timeout set).
+   *
+   * @param chain	the chain of the waiting request
+   * @param flight	the flight to wait for
+   * @return		the snapshot, null if the request needs to perform its own call
+   * @throws IOException	if the shared call failed, the waiting request got cancelled or timed out
+   */
+  protected Snapshot await(Chain chain, Flight flight) throws IOException {
+    Request	request;
+    long	timeout;
+    long	end;
+    long	remaining;
+    boolean	callTimeout;
+
+    request     = chain.request();
+    timeout     = TimeUnit.NANOSECONDS.toMillis(chain.call().timeout().timeoutNanos());
+    callTimeout = (timeout > 0);
+    if (!callTimeout)
+      timeout = chain.connectTimeoutMillis() + chain.readTimeoutMillis();
+    end = (timeout > 0) ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+
+    try {
+      while (true) {
+	if (chain.call().isCanceled())
+	  throw new IOException("Canceled");
+	remaining = end - System.currentTimeMillis();
+	if (remaining <= 0) {
+	  if (callTimeout)
+	    throw new InterruptedIOException("timeout");
+	  // stop waiting, perform own call
+	  return null;
+	}
+	try {
+	  return flight.m_Outcome.get(Math.min(remaining, 100), TimeUnit.MILLISECONDS);
+	}
+	catch (TimeoutException e) {
+	  // check again
+	}
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for coalesced call: " + request.url());
+    }
+    catch (ExecutionException e) {
+      throw new IOException("Coalesced call failed: " + request.url(), e.getCause());
+    }
+  }
+
+  /**
+   * Removes the flight, so that subsequent requests start a new call.
+   *
+   * @param key		the key of the flight
+   * @param flight	the flight to remove
+   * @return		the number of requests waiting for the flight
+   */
+  protected synchronized int done(String key, Flight flight) {
+    m_Flights.remove(key, flight);
+    return flight.m_Waiting;
+  }
+
+  /**
+   * Returns the number of calls currently in flight.
+   *
+   * @return		the number of calls
+   */
+  public synchronized int inFlight() {
+    return m_Flights.size();
+  }
+
+  /**
+   * Returns the number of shared calls performed.
+   *
+   * @return		the number of calls
+   */
+  public long calls() {
+    return m_Calls.get();
+  }
+
+  /**
+   * Returns the number of requests that were served from another
+   * request's call.
+   *
+   * @return		the number of requests
+   */
+  public long collapsed() {
+    return m_Collapsed.get();
+  }
+
+  /**
+   * Resets the counters.
+   */
+  public void resetStatistics() {
+    m_Calls.set(0);
+    m_Collapsed.set(0);
+  }
+
+  /**
+   * Returns a short description of the coalescer.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "inFlight=" + inFlight()
+      + ", calls=" + calls()
+      + ", collapsed=" + collapsed();
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Snapshot.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.cache;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Immutable copy of a response (status, headers and body), which can be
+ * turned into any number of independent responses.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Snapshot {
+
+  /** the estimated overhead per snapshot in bytes. */
+  public final static int OVERHEAD = 256;
+
+  /** the protocol. */
+  protected final Protocol m_Protocol;
+
+  /** the status code. */
+  protected final int m_Code;
+
+  /** the status message. */
+  protected final String m_Message;
+
+  /** the headers. */
+  protected final Headers m_Headers;
+
+  /** the media type of the body, can be null. */
+  protected final MediaType m_MediaType;
+
+  /** the body. */
+  protected final byte[] m_Body;
+
+  /** when the request was sent. */
+  protected final long m_SentAt;
+
+  /** when the response was received. */
+  protected final long m_ReceivedAt;
+
+  /**
+   * Initializes the snapshot.
+   *
+   * @param response	the response to copy the status and headers from
+   * @param body	the body
+   */
+  public Snapshot(Response response, byte[] body) {
+    m_Protocol   = response.protocol();
+    m_Code       = response.code();
+    m_Message    = response.message();
+    m_Headers    = response.headers();
+    m_MediaType  = (response.body() != null) ? response.body().contentType() : null;
+    m_Body       = body;
+    m_SentAt     = response.sentRequestAtMillis();
+    m_ReceivedAt = response.receivedResponseAtMillis();
+  }
+
+  /**
+   * Creates a snapshot from the response, if the body does not exceed the
+   * maximum size. The body gets peeked, i.e., the response can still be
+   * consumed afterwards.
+   *
+   * @param response	the response to copy
+   * @param maxBodySize	the maximum size of the body in bytes
+   * @return		the snapshot, null if body too large
+   * @throws IOException	if reading the body fails
+   */
+  public static Snapshot of(Response response, long maxBodySize) throws IOException {
+    ResponseBody	body;
+    long		length;
+
+    if (response.body() == null)
+      return new Snapshot(response, new byte[0]);
+    length = response.body().contentLength();
+    if (length > maxBodySize)
+      return null;
+    body = response.peekBody(maxBodySize + 1);
+    if (body.contentLength() > maxBodySize)
+      return null;
+
+    return new Snapshot(response, body.bytes());
+  }
+
+  /**
+   * Wraps the response, so that a snapshot gets created while the body is
+   * being consumed, i.e., without delaying the response. The consumer only
+   * receives the snapshot if the body got read completely and does not
+   * exceed the maximum size.
+   *
+   * @param response	the response to copy
+   * @param maxBodySize	the maximum size of the body in bytes
+   * @param consumer	the consumer for the snapshot
+   * @return		the wrapped response (or the response itself, if body too large)
+   */
+  public static Response tee(final Response response, final long maxBodySize, final Consumer<Snapshot> consumer) {
+    final ResponseBody	body;
+    final Buffer	copy;
+    Source		source;
+
+    body = response.body();
+    if (body == null) {
+      consumer.accept(new Snapshot(response, new byte[0]));
+      return response;
+    }
+    if (body.contentLength() > maxBodySize)
+      return response;
+
+    copy   = new Buffer();
+    source = new ForwardingSource(body.source()) {
+      protected boolean m_Overflow;
+      protected boolean m_Done;
+      @Override
+      public long read(Buffer sink, long byteCount) throws IOException {
+	long read = super.read(sink, byteCount);
+	if (read == -1) {
+	  complete();
+	}
+	else if (!m_Overflow) {
+	  if (copy.size() + read > maxBodySize) {
+	    m_Overflow = true;
+	    copy.clear();
+	  }
+	  else {
+	    sink.copyTo(copy, sink.size() - read, read);
+	  }
+	}
+	return read;
+      }
+      @Override
+      public void close() throws IOException {
+	// body of known length read completely, without reaching EOF?
+	if (copy.size() == body.contentLength())
+	  complete();
+	super.close();
+      }
+      protected void complete() {
+	if (m_Overflow || m_Done)
+	  return;
+	m_Done = true;
+	consumer.accept(new Snapshot(response, copy.readByteArray()));
+      }
+    };
+
+    return response.newBuilder()
+      .body(ResponseBody.create(Okio.buffer(source), body.contentType(), body.contentLength()))
+      .build();
+  }
+
+  /**
+   * Returns the status code.
+   *
+   * @return		the code
+   */
+  public int code() {
+    return m_Code;
+  }
+
+  /**
+   * Returns the headers.
+   *
+   * @return		the headers
+   */
+  public Headers headers() {
+    return m_Headers;
+  }
+
+  /**
+   * Returns the length of the body.
+   *
+   * @return		the number of bytes
+   */
+  public int bodyLength() {
+    return m_Body.length;
+  }
+
+  /**
+   * Returns the estimated memory used by the snapshot.
+   *
+   * @return		the number of bytes
+   */
+  public long weight() {
+    return OVERHEAD + m_Body.length + m_Headers.byteCount();
+  }
+
+  /**
+   * Returns when the response was received.
+   *
+   * @return		the timestamp (msec)
+   */
+  public long receivedAt() {
+    return m_ReceivedAt;
+  }
+
+  /**
+   * Creates a new response from the snapshot for the specified request.
+   *
+   * @param request	the request to attach
+   * @return		the response
+   */
+  public Response toResponse(Request request) {
+    return new Response.Builder()
+      .request(request)
+      .protocol(m_Protocol)
+      .code(m_Code)
+      .message(m_Message)
+      .headers(m_Headers)
+      .body(ResponseBody.create(m_Body, m_MediaType))
+      .sentRequestAtMillis(m_SentAt)
+      .receivedResponseAtMillis(m_ReceivedAt)
+      .build();
+  }
+
+  /**
+   * Returns a short description of the snapshot.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return m_Code + " " + m_Message + ", body length: " + m_Body.length;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * CacheStatistics.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.core;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event listener that counts the cache hits, misses and conditional
+ * requests (revalidations) of a client's HTTP cache. Revalidations that
+ * result in a 304 count as hit, otherwise as miss.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CacheStatistics
+  extends EventListener {
+
+  /** the number of hits. */
+  protected AtomicLong m_Hits;
+
+  /** the number of misses. */
+  protected AtomicLong m_Misses;
+
+  /** the number of conditional requests. */
+  protected AtomicLong m_Revalidations;
+
+  /**
+   * Initializes the statistics.
+   */
+  public CacheStatistics() {
+    m_Hits          = new AtomicLong();
+    m_Misses        = new AtomicLong();
+    m_Revalidations = new AtomicLong();
+  }
+
+  @Override
+  public void cacheHit(@NotNull Call call, @NotNull Response response) {
+    m_Hits.incrementAndGet();
+  }
+
+  @Override
+  public void cacheMiss(@NotNull Call call) {
+    m_Misses.incrementAndGet();
+  }
+
+  @Override
+  public void cacheConditionalHit(@NotNull Call call, @NotNull Response cachedResponse) {
+    m_Revalidations.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of responses served from the cache (including
+   * successful revalidations).
+   *
+   * @return		the number of hits
+   */
+  public long hits() {
+    return m_Hits.get();
+  }
+
+  /**
+   * Returns the number of responses that had to be fetched from the network.
+   *
+   * @return		the number of misses
+   */
+  public long misses() {
+    return m_Misses.get();
+  }
+
+  /**
+   * Returns the number of conditional requests for revalidating cached responses.
+   *
+   * @return		the number of revalidations
+   */
+  public long revalidations() {
+    return m_Revalidations.get();
+  }
+
+  /**
+   * Returns the ratio of hits.
+   *
+   * @return		the ratio (0-1), 0 if no requests yet
+   */
+  public double hitRate() {
+    long	hits;
+    long	total;
+
+    hits  = hits();
+    total = hits + misses();
+    if (total == 0)
+      return 0.0;
+    return (double) hits / total;
+  }
+
+  /**
+   * Resets the counters.
+   */
+  public void reset() {
+    m_Hits.set(0);
+    m_Misses.set(0);
+    m_Revalidations.set(0);
+  }
+
+  /**
+   * Returns a short description of the statistics.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "hits=" + hits()
+      + ", misses=" + misses()
+      + ", revalidations=" + revalidations()
+      + ", hitRate=" + hitRate();
+  }
+}
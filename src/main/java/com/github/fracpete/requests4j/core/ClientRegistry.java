@@ -0,0 +1,108 @@
+/*
+ * ClientRegistry.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.core;
+
+import okhttp3.OkHttpClient;
+
+import java.net.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide registry of HTTP clients for requests that are not attached
+ * to a session. Clients are keyed by their effective configuration (timeouts,
+ * proxy, redirect policy) and are all derived from a single root client via
+ * {@link OkHttpClient#newBuilder()}, i.e., they share the same connection
+ * pool and dispatcher.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ClientRegistry {
+
+  /** the root client that provides connection pool and dispatcher. */
+  protected static OkHttpClient m_Root;
+
+  /** the clients per configuration. */
+  protected static final Map<String,OkHttpClient> m_Clients = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the root client, instantiates it if necessary.
+   *
+   * @return		the root client
+   */
+  public static synchronized OkHttpClient root() {
+    if (m_Root == null)
+      m_Root = new OkHttpClient();
+    return m_Root;
+  }
+
+  /**
+   * Generates the key for the configuration.
+   *
+   * @param connectTimeout	the connect timeout in seconds, -1 for default
+   * @param readTimeout		the read timeout in seconds, -1 for default
+   * @param writeTimeout	the write timeout in seconds, -1 for default
+   * @param proxy		the proxy, null for none
+   * @param followRedirects	whether to follow redirects
+   * @return			the key
+   */
+  protected static String key(int connectTimeout, int readTimeout, int writeTimeout, Proxy proxy, boolean followRedirects) {
+    return "connect=" + connectTimeout
+      + ",read=" + readTimeout
+      + ",write=" + writeTimeout
+      + ",proxy=" + proxy
+      + ",redirects=" + followRedirects;
+  }
+
+  /**
+   * Returns the shared client for the specified configuration.
+   * Instantiates it if necessary.
+   *
+   * @param connectTimeout	the connect timeout in seconds, -1 for default
+   * @param readTimeout		the read timeout in seconds, -1 for default
+   * @param writeTimeout	the write timeout in seconds, -1 for default
+   * @param proxy		the proxy, null for none
+   * @param followRedirects	whether to follow redirects
+   * @return			the client
+   */
+  public static OkHttpClient client(int connectTimeout, int readTimeout, int writeTimeout, Proxy proxy, boolean followRedirects) {
+    return m_Clients.computeIfAbsent(
+      key(connectTimeout, readTimeout, writeTimeout, proxy, followRedirects),
+      k -> {
+	OkHttpClient.Builder builder = root().newBuilder()
+	  .followRedirects(followRedirects);
+	if (connectTimeout != -1)
+	  builder.connectTimeout(connectTimeout, TimeUnit.SECONDS);
+	if (readTimeout != -1)
+	  builder.readTimeout(readTimeout, TimeUnit.SECONDS);
+	if (writeTimeout != -1)
+	  builder.writeTimeout(writeTimeout, TimeUnit.SECONDS);
+	if (proxy != null)
+	  builder.proxy(proxy);
+	return builder.build();
+      });
+  }
+
+  /**
+   * Returns the number of registered configurations.
+   *
+   * @return		the number of clients
+   */
+  public static int size() {
+    return m_Clients.size();
+  }
+
+  /**
+   * Removes all registered clients and evicts all idle connections
+   * from the shared pool.
+   */
+  public static synchronized void clear() {
+    m_Clients.clear();
+    if (m_Root != null)
+      m_Root.connectionPool().evictAll();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * JsonRequestBody.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.core;
+
+import com.github.fracpete.requests4j.json.Element;
+import com.github.fracpete.requests4j.json.JsonCodec;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RequestBody for Json elements or arbitrary objects (bound via the cached
+ * type adapters of {@link JsonCodec}). Serializes the value straight into
+ * the sink, without generating an intermediate tree, string or byte array.
+ * Since the value gets serialized each time, the body can be resent.
+ * By default, the content length gets determined upfront (by serializing
+ * the value into a counting sink); sending it without content length,
+ * i.e., using chunked transfer encoding, is opt-in.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class JsonRequestBody
+  extends RequestBody
+  implements Resendable {
+
+  /** the media type. */
+  protected MediaType m_MediaType;
+
+  /** the value to serialize. */
+  protected Object m_Value;
+
+  /** the type of the value. */
+  protected Type m_Type;
+
+  /** the content length, -1 if unknown. */
+  protected long m_ContentLength;
+
+  /**
+   * Initializes the request body with JSON/UTF-8 media type and content length.
+   *
+   * @param json	the json data
+   */
+  public JsonRequestBody(JsonElement json) {
+    this(MediaTypeHelper.APPLICATION_JSON_UTF8, json, true);
+  }
+
+  /**
+   * Initializes the request body.
+   *
+   * @param mediaType	the media type
+   * @param json	the json data
+   * @param computeLength	whether to determine the content length upfront (requires serializing the data twice)
+   */
+  public JsonRequestBody(MediaType mediaType, JsonElement json, boolean computeLength) {
+    this(mediaType, json, JsonElement.class, computeLength);
+  }
+
+  /**
+   * Initializes the request body. The element gets written directly, i.e.,
+   * without generating the Json tree for elements like numeric arrays.
+   *
+   * @param mediaType	the media type
+   * @param element	the element
+   * @param computeLength	whether to determine the content length upfront (requires serializing the data twice)
+   */
+  public JsonRequestBody(MediaType mediaType, Element element, boolean computeLength) {
+    this(mediaType, element, Element.class, computeLength);
+  }
+
+  /**
+   * Initializes the request body with JSON/UTF-8 media type and content length.
+   *
+   * @param value	the object to serialize
+   * @param type	the type of the object, e.g., for generic collections
+   */
+  public JsonRequestBody(Object value, Type type) {
+    this(MediaTypeHelper.APPLICATION_JSON_UTF8, value, type, true);
+  }
+
+  /**
+   * Initializes the request body.
+   *
+   * @param mediaType	the media type
+   * @param value	the object to serialize
+   * @param type	the type of the object, e.g., for generic collections
+   * @param computeLength	whether to determine the content length upfront (requires serializing the data twice)
+   */
+  public JsonRequestBody(MediaType mediaType, Object value, Type type, boolean computeLength) {
+    m_MediaType     = mediaType;
+    m_Value         = value;
+    m_Type          = type;
+    m_ContentLength = -1;
+    if (computeLength)
+      m_ContentLength = computeLength();
+  }
+
+  /**
+   * Determines the number of bytes of the serialized data, without storing it.
+   *
+   * @return		the number of bytes
+   */
+  protected long computeLength() {
+    final long[]	count;
+    BufferedSink	sink;
+
+    count = new long[1];
+    sink  = Okio.buffer(new ForwardingSink(Okio.blackhole()) {
+      @Override
+      public void write(@NotNull Buffer source, long byteCount) throws IOException {
+	count[0] += byteCount;
+	super.write(source, byteCount);
+      }
+    });
+    try {
+      writeTo(sink);
+      sink.close();
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Failed to determine length of json data!", e);
+    }
+
+    return count[0];
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    return m_ContentLength;
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return m_MediaType;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void writeTo(@NotNull BufferedSink bufferedSink) throws IOException {
+    Writer	writer;
+    JsonWriter	jsonWriter;
+
+    writer     = new OutputStreamWriter(bufferedSink.outputStream(), StandardCharsets.UTF_8);
+    jsonWriter = JsonCodec.compact().newJsonWriter(writer);
+    if (m_Value instanceof Element)
+      ((Element) m_Value).write(jsonWriter);
+    else  // the type was determined from the value or provided with it
+      ((TypeAdapter<Object>) JsonCodec.adapter(m_Type)).write(jsonWriter, m_Value);
+    jsonWriter.flush();
+  }
+
+  /**
+   * Returns true if the object can resend its data.
+   *
+   * @return		always true, as the value gets serialized on each write
+   */
+  @Override
+  public boolean canResend() {
+    return true;
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * MediaTypeHelper.java
- * Copyright (C) 2013-2024 University of Waikato, Hamilton, New Zealand
+ * Copyright (C) 2013-2026 University of Waikato, Hamilton, New Zealand
  */
 package com.github.fracpete.requests4j.core;
 
@@ -29,6 +29,8 @@ public class MediaTypeHelper {
 
   public final static MediaType APPLICATION_JSON_UTF8 = MediaType.parse("application/json; charset=utf-8");
 
+  public final static MediaType APPLICATION_X_NDJSON = MediaType.parse("application/x-ndjson");
+
   /**
    * Tries to determine the media type of a file by checking its magic bytes.
    * Taken from here:
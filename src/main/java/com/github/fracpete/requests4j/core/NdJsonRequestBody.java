@@ -0,0 +1,107 @@
+/*
+ * NdJsonRequestBody.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.core;
+
+import com.github.fracpete.requests4j.json.Element;
+import com.github.fracpete.requests4j.json.JsonCodec;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * RequestBody for newline-delimited Json (NDJSON, JSON Lines). Streams
+ * the records from the iterator into the connection as they get generated,
+ * using chunked transfer encoding. As the iterator gets consumed, the body
+ * cannot be resent.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class NdJsonRequestBody
+  extends RequestBody
+  implements Resendable {
+
+  /** the media type. */
+  protected MediaType m_MediaType;
+
+  /** the records. */
+  protected Iterator<? extends Element> m_Records;
+
+  /**
+   * Initializes the request body.
+   *
+   * @param records	the records to send
+   */
+  public NdJsonRequestBody(Iterator<? extends Element> records) {
+    this(MediaTypeHelper.APPLICATION_X_NDJSON, records);
+  }
+
+  /**
+   * Initializes the request body.
+   *
+   * @param records	the records to send
+   */
+  public NdJsonRequestBody(Stream<? extends Element> records) {
+    this(MediaTypeHelper.APPLICATION_X_NDJSON, records.iterator());
+  }
+
+  /**
+   * Initializes the request body.
+   *
+   * @param mediaType	the media type
+   * @param records	the records to send
+   */
+  public NdJsonRequestBody(MediaType mediaType, Iterator<? extends Element> records) {
+    m_MediaType = mediaType;
+    m_Records   = records;
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    return -1;
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return m_MediaType;
+  }
+
+  @Override
+  public boolean isOneShot() {
+    return true;
+  }
+
+  /**
+   * Returns true if the object can resend its data.
+   *
+   * @return		always false
+   */
+  @Override
+  public boolean canResend() {
+    return false;
+  }
+
+  @Override
+  public void writeTo(@NotNull BufferedSink bufferedSink) throws IOException {
+    Writer	writer;
+
+    writer = new OutputStreamWriter(bufferedSink.outputStream(), StandardCharsets.UTF_8);
+    while (m_Records.hasNext()) {
+      JsonCodec.compact().toJson(m_Records.next().toJson(), JsonCodec.compact().newJsonWriter(writer));
+      writer.write('\n');
+      writer.flush();
+    }
+  }
+}
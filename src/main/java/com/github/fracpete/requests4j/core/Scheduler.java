@@ -0,0 +1,54 @@
+/*
+ * Scheduler.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.core;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared scheduler for delayed actions, e.g., reconnects. Uses a single
+ * daemon thread, i.e., scheduled tasks must not block.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Scheduler {
+
+  /** the executor, null if not yet instantiated. */
+  protected static ScheduledExecutorService m_Executor;
+
+  /**
+   * Returns the shared executor. Instantiates it if necessary.
+   *
+   * @return		the executor
+   */
+  public static synchronized ScheduledExecutorService executor() {
+    ScheduledThreadPoolExecutor	executor;
+
+    if (m_Executor == null) {
+      executor = new ScheduledThreadPoolExecutor(1, r -> {
+	Thread t = new Thread(r, "requests4j-scheduler");
+	t.setDaemon(true);
+	return t;
+      });
+      executor.setRemoveOnCancelPolicy(true);
+      m_Executor = executor;
+    }
+    return m_Executor;
+  }
+
+  /**
+   * Schedules the task.
+   *
+   * @param task	the task to execute
+   * @param delay	the delay in msec
+   * @return		the future for cancelling the task
+   */
+  public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+    return executor().schedule(task, Math.max(0, delay), TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * VirtualThreads.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Helper class for virtual threads (Java 21+). Uses reflection, as the
+ * library gets compiled for older Java versions.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class VirtualThreads {
+
+  /** the factory method for the executor, null if not available. */
+  protected static Method m_Factory;
+
+  /** whether the factory method has been looked up. */
+  protected static boolean m_Initialized;
+
+  /**
+   * Returns the factory method for virtual-thread-per-task executors.
+   *
+   * @return		the method, null if not available
+   */
+  protected static synchronized Method factory() {
+    if (!m_Initialized) {
+      m_Initialized = true;
+      try {
+	m_Factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      }
+      catch (Exception e) {
+	m_Factory = null;
+      }
+    }
+    return m_Factory;
+  }
+
+  /**
+   * Returns whether virtual threads are supported by the JVM.
+   *
+   * @return		true if supported
+   */
+  public static boolean isSupported() {
+    return (factory() != null);
+  }
+
+  /**
+   * Creates a new executor that starts a new virtual thread for each task.
+   *
+   * @return		the executor, null if virtual threads not supported
+   */
+  public static ExecutorService newExecutor() {
+    if (!isSupported())
+      return null;
+    try {
+      return (ExecutorService) factory().invoke(null);
+    }
+    catch (Exception e) {
+      System.err.println("Failed to instantiate virtual thread executor!");
+      e.printStackTrace();
+      return null;
+    }
+  }
+}
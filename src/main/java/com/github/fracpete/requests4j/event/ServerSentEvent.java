@@ -0,0 +1,90 @@
+/*
+ * ServerSentEvent.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.event;
+
+import com.github.fracpete.requests4j.request.EventSource;
+
+import java.util.EventObject;
+
+/**
+ * Event that gets sent when an event stream dispatches an event.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ServerSentEvent
+  extends EventObject {
+
+  /** the last event ID. */
+  protected String m_ID;
+
+  /** the event type. */
+  protected String m_Type;
+
+  /** the data. */
+  protected String m_Data;
+
+  /**
+   * Initializes the event.
+   *
+   * @param source	the event source that received the event
+   * @param id		the last event ID, can be null
+   * @param type	the event type
+   * @param data	the data
+   * @throws IllegalArgumentException if source is null
+   */
+  public ServerSentEvent(EventSource source, String id, String type, String data) {
+    super(source);
+    m_ID   = id;
+    m_Type = type;
+    m_Data = data;
+  }
+
+  /**
+   * Returns the event source.
+   *
+   * @return		the source
+   */
+  public EventSource getEventSource() {
+    return (EventSource) getSource();
+  }
+
+  /**
+   * Returns the last event ID.
+   *
+   * @return		the ID, null if none received yet
+   */
+  public String getID() {
+    return m_ID;
+  }
+
+  /**
+   * Returns the event type.
+   *
+   * @return		the type, "message" if none specified
+   */
+  public String getType() {
+    return m_Type;
+  }
+
+  /**
+   * Returns the data.
+   *
+   * @return		the data
+   */
+  public String getData() {
+    return m_Data;
+  }
+
+  /**
+   * Returns a short description of the event.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "id=" + m_ID + ", type=" + m_Type + ", data=" + m_Data;
+  }
+}
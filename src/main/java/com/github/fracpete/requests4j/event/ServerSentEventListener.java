@@ -0,0 +1,22 @@
+/*
+ * ServerSentEventListener.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.event;
+
+/**
+ * Interface for listeners that get notified when an event stream
+ * dispatches an event.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface ServerSentEventListener {
+
+  /**
+   * Gets called when an event has been received.
+   *
+   * @param e		the event
+   */
+  public void eventReceived(ServerSentEvent e);
+}
@@ -1,11 +1,10 @@
 /*
  * Array.java
- * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ * Copyright (C) 2021-2026 University of Waikato, Hamilton, New Zealand
  */
 
 package com.github.fracpete.requests4j.json;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 
 /**
@@ -38,9 +37,7 @@ public class Array
    * @param json the string to parse
    */
   public Array(String json) {
-    this();
-    Gson gson = new Gson();
-    m_Data = gson.fromJson(json, JsonArray.class);
+    m_Data = JsonCodec.compact().fromJson(json, JsonArray.class);
   }
 
   /**
@@ -1,11 +1,10 @@
 /*
  * Dictionary.java
- * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ * Copyright (C) 2021-2026 University of Waikato, Hamilton, New Zealand
  */
 
 package com.github.fracpete.requests4j.json;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -41,9 +40,7 @@ public class Dictionary
    * Initializes the dictionary from the JSON string.
    */
   public Dictionary(String json) {
-    this();
-    Gson gson = new Gson();
-    m_Data = gson.fromJson(json, JsonObject.class);
+    m_Data = JsonCodec.compact().fromJson(json, JsonObject.class);
   }
 
   /**
@@ -1,12 +1,14 @@
 /*
  * Element.java
- * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ * Copyright (C) 2021-2026 University of Waikato, Hamilton, New Zealand
  */
 
 package com.github.fracpete.requests4j.json;
 
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -29,6 +31,16 @@ public abstract class Element<T extends com.google.gson.JsonElement>
     return m_Data;
   }
 
+  /**
+   * Writes the element to the writer.
+   *
+   * @param writer the writer to use
+   * @throws IOException if writing fails
+   */
+  public void write(JsonWriter writer) throws IOException {
+    JsonCodec.adapter(JsonElement.class).write(writer, toJson());
+  }
+
   /**
    * Returns a string representation with no pretty-printing.
    *
@@ -45,13 +57,7 @@ public abstract class Element<T extends com.google.gson.JsonElement>
    * @return the string representation
    */
   public String dump(int indentation) {
-    GsonBuilder builder;
-
-    builder = new GsonBuilder();
-    if (indentation > 0)
-      builder.setPrettyPrinting();
-
-    return builder.create().toJson(m_Data);
+    return JsonCodec.get(indentation).toJson(m_Data);
   }
 
   /**
@@ -0,0 +1,211 @@
+/*
+ * JsonCodec.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package com.github.fracpete.requests4j.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides shared, thread-safe Gson instances for serializing and parsing.
+ * Numeric arrays get bound without boxing (see {@link NumericArray}).
+ * Custom type adapters can be registered, which results in the instances
+ * (and the cached adapters for binding objects) getting re-created.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class JsonCodec {
+
+  /** the custom type adapters. */
+  protected static final Map<Type,Object> m_TypeAdapters = new LinkedHashMap<>();
+
+  /** the custom type adapter factories. */
+  protected static final List<TypeAdapterFactory> m_TypeAdapterFactories = new ArrayList<>();
+
+  /** the current instances, null if to be re-created. */
+  protected static volatile Instances m_Instances;
+
+  /**
+   * Holds the Gson instances together with the adapters cached for them,
+   * so that a {@link #reset()} swaps all of them at once.
+   */
+  protected static class Instances {
+
+    /** the instance for compact output. */
+    protected final Gson m_Compact;
+
+    /** the instance for pretty printed output. */
+    protected final Gson m_Pretty;
+
+    /** the cached adapters per type (compact instance). */
+    protected final Map<Type,TypeAdapter<?>> m_Adapters;
+
+    /**
+     * Initializes the instances.
+     *
+     * @param compact	the instance for compact output
+     * @param pretty	the instance for pretty printed output
+     */
+    protected Instances(Gson compact, Gson pretty) {
+      m_Compact  = compact;
+      m_Pretty   = pretty;
+      m_Adapters = new ConcurrentHashMap<>();
+    }
+  }
+
+  /**
+   * Returns a new builder with the custom type adapters registered.
+   *
+   * @return		the builder
+   */
+  protected static synchronized GsonBuilder builder() {
+    GsonBuilder		result;
+
+    result = new GsonBuilder();
+    result.registerTypeAdapterFactory(NumericArray.ADAPTERS);
+    for (Type type: m_TypeAdapters.keySet())
+      result.registerTypeAdapter(type, m_TypeAdapters.get(type));
+    for (TypeAdapterFactory factory: m_TypeAdapterFactories)
+      result.registerTypeAdapterFactory(factory);
+
+    return result;
+  }
+
+  /**
+   * Returns the current instances, creating them if necessary.
+   *
+   * @return		the instances
+   */
+  protected static Instances instances() {
+    Instances	result;
+
+    result = m_Instances;
+    if (result == null) {
+      synchronized (JsonCodec.class) {
+	if (m_Instances == null)
+	  m_Instances = new Instances(builder().create(), builder().setPrettyPrinting().create());
+	result = m_Instances;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the shared instance for compact output and parsing.
+   *
+   * @return		the instance
+   */
+  public static Gson compact() {
+    return instances().m_Compact;
+  }
+
+  /**
+   * Returns the shared instance for pretty printed output.
+   *
+   * @return		the instance
+   */
+  public static Gson pretty() {
+    return instances().m_Pretty;
+  }
+
+  /**
+   * Returns the instance for the specified indentation.
+   *
+   * @param indentation	if >0 then pretty printed
+   * @return		the instance
+   */
+  public static Gson get(int indentation) {
+    if (indentation > 0)
+      return pretty();
+    else
+      return compact();
+  }
+
+  /**
+   * Returns the (cached) adapter of the compact instance for binding
+   * objects of the specified class.
+   *
+   * @param cls		the class to get the adapter for
+   * @return		the adapter
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> TypeAdapter<T> adapter(Class<T> cls) {
+    // the adapter was obtained for this very class
+    return (TypeAdapter<T>) adapter((Type) cls);
+  }
+
+  /**
+   * Returns the (cached) adapter of the compact instance for binding
+   * objects of the specified type, e.g., generic collections.
+   *
+   * @param type	the type to get the adapter for
+   * @return		the adapter
+   */
+  public static TypeAdapter<?> adapter(Type type) {
+    Instances		instances;
+    TypeAdapter<?>	result;
+
+    // adapter and Gson instance always stem from the same snapshot
+    instances = instances();
+    result    = instances.m_Adapters.get(type);
+    if (result == null) {
+      result = instances.m_Compact.getAdapter(TypeToken.get(type));
+      instances.m_Adapters.put(type, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Registers the custom type adapter (serializer, deserializer, instance
+   * creator or type adapter).
+   *
+   * @param type	the type to register the adapter for
+   * @param adapter	the adapter
+   * @see		GsonBuilder#registerTypeAdapter(Type, Object)
+   */
+  public static synchronized void registerTypeAdapter(Type type, Object adapter) {
+    m_TypeAdapters.put(type, adapter);
+    reset();
+  }
+
+  /**
+   * Registers the custom type adapter factory.
+   *
+   * @param factory	the factory
+   * @see		GsonBuilder#registerTypeAdapterFactory(TypeAdapterFactory)
+   */
+  public static synchronized void registerTypeAdapterFactory(TypeAdapterFactory factory) {
+    m_TypeAdapterFactories.add(factory);
+    reset();
+  }
+
+  /**
+   * Removes all custom type adapters and factories.
+   */
+  public static synchronized void clear() {
+    m_TypeAdapters.clear();
+    m_TypeAdapterFactories.clear();
+    reset();
+  }
+
+  /**
+   * Discards the current instances, forcing them to get re-created.
+   */
+  protected static synchronized void reset() {
+    m_Instances = null;
+  }
+}
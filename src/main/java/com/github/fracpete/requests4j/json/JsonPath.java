@@ -0,0 +1,382 @@
+/*
+ * JsonPath.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package com.github.fracpete.requests4j.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simple path expressions for selecting values from Json documents.
+ * Supported syntax:
+ * <ul>
+ *   <li><code>$</code> - the root</li>
+ *   <li><code>.name</code> or <code>['name']</code> - the member of an object</li>
+ *   <li><code>[n]</code> - the n-th (0-based) element of an array</li>
+ *   <li><code>.*</code> or <code>[*]</code> - all members/elements</li>
+ * </ul>
+ * Example: <code>$.items[*].id</code>
+ * <br>
+ * Selecting from a {@link JsonReader} only materializes the matching
+ * values, everything else gets skipped.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class JsonPath {
+
+  /**
+   * A single step of the path.
+   */
+  protected static class Segment {
+
+    /** the name of the member, null if not a member. */
+    protected String m_Name;
+
+    /** the index of the element, -1 if not an element. */
+    protected int m_Index;
+
+    /**
+     * Initializes the segment.
+     *
+     * @param name	the name of the member, null for wildcard or element
+     * @param index	the index of the element, -1 for wildcard or member
+     */
+    public Segment(String name, int index) {
+      m_Name  = name;
+      m_Index = index;
+    }
+
+    /**
+     * Returns whether the segment matches all members/elements.
+     *
+     * @return		true if wildcard
+     */
+    public boolean isWildcard() {
+      return (m_Name == null) && (m_Index == -1);
+    }
+
+    /**
+     * Returns whether the segment matches the member name.
+     *
+     * @param name	the name to check
+     * @return		true if match
+     */
+    public boolean matches(String name) {
+      return isWildcard() || name.equals(m_Name);
+    }
+
+    /**
+     * Returns whether the segment matches the element index.
+     *
+     * @param index	the index to check
+     * @return		true if match
+     */
+    public boolean matches(int index) {
+      return isWildcard() || (index == m_Index);
+    }
+  }
+
+  /** the path expression. */
+  protected String m_Path;
+
+  /** the segments. */
+  protected Segment[] m_Segments;
+
+  /**
+   * Initializes the path.
+   *
+   * @param path	the path expression
+   * @throws IllegalArgumentException	if the expression is invalid
+   */
+  public JsonPath(String path) {
+    m_Path     = path;
+    m_Segments = parse(path);
+  }
+
+  /**
+   * Parses the path expression.
+   *
+   * @param path	the expression to parse
+   * @return		the segments
+   * @throws IllegalArgumentException	if the expression is invalid
+   */
+  protected static Segment[] parse(String path) {
+    List<Segment>	result;
+    int			pos;
+    int			end;
+    char		quote;
+    String		token;
+
+    if ((path == null) || !path.startsWith("$"))
+      throw new IllegalArgumentException("Path must start with '$': " + path);
+
+    result = new ArrayList<>();
+    pos    = 1;
+    while (pos < path.length()) {
+      if (path.startsWith("..", pos))
+	throw new IllegalArgumentException("Recursive descent not supported: " + path);
+
+      if (path.charAt(pos) == '.') {
+	pos++;
+	end = pos;
+	while ((end < path.length()) && (path.charAt(end) != '.') && (path.charAt(end) != '['))
+	  end++;
+	token = path.substring(pos, end);
+	if (token.isEmpty())
+	  throw new IllegalArgumentException("Missing name at position " + pos + ": " + path);
+	result.add(token.equals("*") ? new Segment(null, -1) : new Segment(token, -1));
+	pos = end;
+      }
+      else if (path.charAt(pos) == '[') {
+	pos++;
+	if ((pos < path.length()) && ((path.charAt(pos) == '\'') || (path.charAt(pos) == '"'))) {
+	  quote = path.charAt(pos);
+	  end   = path.indexOf(quote, pos + 1);
+	  if ((end == -1) || (end + 1 >= path.length()) || (path.charAt(end + 1) != ']'))
+	    throw new IllegalArgumentException("Unterminated name at position " + pos + ": " + path);
+	  result.add(new Segment(path.substring(pos + 1, end), -1));
+	  pos = end + 2;
+	}
+	else {
+	  end = path.indexOf(']', pos);
+	  if (end == -1)
+	    throw new IllegalArgumentException("Missing ']' at position " + pos + ": " + path);
+	  token = path.substring(pos, end).trim();
+	  if (token.equals("*")) {
+	    result.add(new Segment(null, -1));
+	  }
+	  else {
+	    try {
+	      result.add(new Segment(null, Integer.parseInt(token)));
+	    }
+	    catch (NumberFormatException e) {
+	      throw new IllegalArgumentException("Invalid index '" + token + "' at position " + pos + ": " + path);
+	    }
+	    if (result.get(result.size() - 1).m_Index < 0)
+	      throw new IllegalArgumentException("Negative index at position " + pos + ": " + path);
+	  }
+	  pos = end + 1;
+	}
+      }
+      else {
+	throw new IllegalArgumentException("Unexpected character '" + path.charAt(pos) + "' at position " + pos + ": " + path);
+      }
+    }
+
+    return result.toArray(new Segment[0]);
+  }
+
+  /**
+   * Returns the number of segments.
+   *
+   * @return		the number of segments
+   */
+  public int length() {
+    return m_Segments.length;
+  }
+
+  /**
+   * Selects the matching values from the element.
+   *
+   * @param element	the element to select from
+   * @return		the matching values
+   */
+  public List<JsonElement> select(JsonElement element) {
+    List<JsonElement>	result;
+
+    result = new ArrayList<>();
+    select(element, 0, result);
+
+    return result;
+  }
+
+  /**
+   * Selects the matching values from the element.
+   *
+   * @param element	the element to select from
+   * @param depth	the current depth, i.e., the segment to match next
+   * @param result	for adding the matching values
+   */
+  protected void select(JsonElement element, int depth, List<JsonElement> result) {
+    Segment	segment;
+    JsonObject	obj;
+    JsonArray	array;
+    int		i;
+
+    if (depth == m_Segments.length) {
+      result.add(element);
+      return;
+    }
+
+    segment = m_Segments[depth];
+    if (element.isJsonObject()) {
+      obj = element.getAsJsonObject();
+      for (String name: obj.keySet()) {
+	if (segment.matches(name))
+	  select(obj.get(name), depth + 1, result);
+      }
+    }
+    else if (element.isJsonArray()) {
+      array = element.getAsJsonArray();
+      for (i = 0; i < array.size(); i++) {
+	if (segment.matches(i))
+	  select(array.get(i), depth + 1, result);
+      }
+    }
+  }
+
+  /**
+   * Selects the values matching the paths from the element.
+   *
+   * @param element	the element to select from
+   * @param paths	the path expressions
+   * @return		the matching values per path (in order of the paths)
+   * @throws IllegalArgumentException	if an expression is invalid
+   */
+  public static Map<String,List<JsonElement>> select(JsonElement element, String... paths) {
+    Map<String,List<JsonElement>>	result;
+
+    result = new LinkedHashMap<>();
+    for (String path: paths)
+      result.put(path, new JsonPath(path).select(element));
+
+    return result;
+  }
+
+  /**
+   * Selects the values matching the paths from the reader, in a single pass.
+   * Only the matching values get materialized, everything else is skipped.
+   *
+   * @param reader	the reader to select from, positioned at the value
+   * @param paths	the path expressions
+   * @return		the matching values per path (in order of the paths)
+   * @throws IOException	if reading fails
+   * @throws IllegalArgumentException	if an expression is invalid
+   */
+  public static Map<String,List<JsonElement>> select(JsonReader reader, String... paths) throws IOException {
+    Map<String,List<JsonElement>>	result;
+    JsonPath[]				compiled;
+    List<List<JsonElement>>		values;
+    List<Integer>			active;
+    int					i;
+
+    compiled = new JsonPath[paths.length];
+    values   = new ArrayList<>(paths.length);
+    active   = new ArrayList<>();
+    for (i = 0; i < paths.length; i++) {
+      compiled[i] = new JsonPath(paths[i]);
+      values.add(new ArrayList<>());
+      active.add(i);
+    }
+
+    select(reader, compiled, values, active, 0);
+
+    result = new LinkedHashMap<>();
+    for (i = 0; i < paths.length; i++)
+      result.put(paths[i], values.get(i));
+
+    return result;
+  }
+
+  /**
+   * Selects the values of the active paths from the reader's current value.
+   *
+   * @param reader	the reader to select from
+   * @param paths	all paths
+   * @param values	the matching values per path
+   * @param active	the indices of the paths that match the current location
+   * @param depth	the current depth
+   * @throws IOException	if reading fails
+   */
+  protected static void select(JsonReader reader, JsonPath[] paths, List<List<JsonElement>> values, List<Integer> active, int depth) throws IOException {
+    List<Integer>	complete;
+    List<Integer>	deeper;
+    List<Integer>	next;
+    JsonElement		element;
+    String		name;
+    int			index;
+
+    complete = new ArrayList<>();
+    deeper   = new ArrayList<>();
+    for (int i: active) {
+      if (paths[i].length() == depth)
+	complete.add(i);
+      else
+	deeper.add(i);
+    }
+
+    // materialize value
+    if (!complete.isEmpty()) {
+      element = JsonParser.parseReader(reader);
+      for (int i: complete)
+	values.get(i).add(element);
+      for (int i: deeper)
+	paths[i].select(element, depth, values.get(i));
+      return;
+    }
+
+    if (deeper.isEmpty()) {
+      reader.skipValue();
+      return;
+    }
+
+    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+	name = reader.nextName();
+	next = new ArrayList<>();
+	for (int i: deeper) {
+	  if (paths[i].m_Segments[depth].matches(name))
+	    next.add(i);
+	}
+	if (next.isEmpty())
+	  reader.skipValue();
+	else
+	  select(reader, paths, values, next, depth + 1);
+      }
+      reader.endObject();
+    }
+    else if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+      reader.beginArray();
+      index = 0;
+      while (reader.hasNext()) {
+	next = new ArrayList<>();
+	for (int i: deeper) {
+	  if (paths[i].m_Segments[depth].matches(index))
+	    next.add(i);
+	}
+	if (next.isEmpty())
+	  reader.skipValue();
+	else
+	  select(reader, paths, values, next, depth + 1);
+	index++;
+      }
+      reader.endArray();
+    }
+    else {
+      reader.skipValue();
+    }
+  }
+
+  /**
+   * Returns the path expression.
+   *
+   * @return		the expression
+   */
+  @Override
+  public String toString() {
+    return m_Path;
+  }
+}
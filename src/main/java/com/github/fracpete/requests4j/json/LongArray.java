@@ -0,0 +1,136 @@
+/*
+ * LongArray.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package com.github.fracpete.requests4j.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Json array backed by a long array.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class LongArray
+  extends NumericArray {
+
+  /** the values. */
+  protected long[] m_Values;
+
+  /**
+   * Initializes the array. Does not copy the values.
+   *
+   * @param values the values to use
+   */
+  public LongArray(long... values) {
+    m_Values = values;
+  }
+
+  /**
+   * Returns the values. Does not copy them.
+   *
+   * @return the values
+   */
+  public long[] values() {
+    return m_Values;
+  }
+
+  /**
+   * Returns the number of array elements.
+   *
+   * @return the number of elements
+   */
+  @Override
+  public int size() {
+    return m_Values.length;
+  }
+
+  /**
+   * Returns the specified element.
+   *
+   * @param index the index of the element
+   * @return the value
+   */
+  @Override
+  public Long get(int index) {
+    return m_Values[index];
+  }
+
+  /**
+   * Returns the capacity of the primitive array.
+   *
+   * @return the capacity
+   */
+  @Override
+  protected int capacity() {
+    return m_Values.length;
+  }
+
+  /**
+   * Resizes the primitive array, keeping the values that fit.
+   *
+   * @param capacity the new capacity
+   */
+  @Override
+  protected void resize(int capacity) {
+    m_Values = Arrays.copyOf(m_Values, capacity);
+  }
+
+  /**
+   * Writes the specified element.
+   *
+   * @param writer the writer to use
+   * @param index the index of the element
+   * @throws IOException if writing fails
+   */
+  @Override
+  protected void writeValue(JsonWriter writer, int index) throws IOException {
+    writer.value(m_Values[index]);
+  }
+
+  /**
+   * Reads the next value into the specified element.
+   *
+   * @param reader the reader to use
+   * @param index the index of the element
+   * @throws IOException if reading fails
+   * @throws NumberFormatException if the value is not a long
+   */
+  @Override
+  protected void readValue(JsonReader reader, int index) throws IOException {
+    m_Values[index] = reader.nextLong();
+  }
+
+  /**
+   * Reads a homogeneous numeric array straight into a long array.
+   *
+   * @param reader the reader to use, positioned at the array
+   * @return the new instance
+   * @throws IOException if reading fails
+   * @throws NumberFormatException if an element is not a long
+   */
+  public static LongArray parse(JsonReader reader) throws IOException {
+    LongArray	result;
+
+    result = new LongArray();
+    result.read(reader);
+
+    return result;
+  }
+
+  /**
+   * Parses a homogeneous numeric array straight into a long array.
+   *
+   * @param json the json string to parse
+   * @return the new instance
+   * @throws NumberFormatException if an element is not a long
+   */
+  public static LongArray parse(String json) {
+    return parse(json, new LongArray());
+  }
+}
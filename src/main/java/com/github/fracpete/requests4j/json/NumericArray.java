@@ -0,0 +1,246 @@
+/*
+ * NumericArray.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package com.github.fracpete.requests4j.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Ancestor for Json arrays that are backed by primitive arrays. The values
+ * get written directly, without boxing them into Json primitives. The Json
+ * tree only gets generated when calling {@link #toJson()} (a snapshot,
+ * changes to the tree do not affect the primitive values).
+ * <br>
+ * Derived classes only handle the access to their primitive array, the
+ * writing, parsing and growing of the array is done here. Binding of
+ * {@link IntArray}, {@link LongArray} and {@link DoubleArray} fields via
+ * {@link JsonCodec} uses {@link #ADAPTERS}, avoiding per-element object
+ * allocation when reading or writing.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public abstract class NumericArray
+  extends Element<JsonArray> {
+
+  /** the initial capacity when parsing. */
+  public final static int INITIAL_CAPACITY = 16;
+
+  /** the type adapters for numeric array elements. */
+  public final static TypeAdapterFactory ADAPTERS = new TypeAdapterFactory() {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+      final Class<?> cls = type.getRawType();
+
+      if ((cls != IntArray.class) && (cls != LongArray.class) && (cls != DoubleArray.class))
+	return null;
+
+      // T is one of the numeric array classes checked above
+      return (TypeAdapter<T>) new TypeAdapter<NumericArray>() {
+	@Override
+	public void write(JsonWriter out, NumericArray value) throws IOException {
+	  if (value == null)
+	    out.nullValue();
+	  else
+	    value.write(out);
+	}
+
+	@Override
+	public NumericArray read(JsonReader in) throws IOException {
+	  NumericArray	result;
+
+	  if (in.peek() == JsonToken.NULL) {
+	    in.nextNull();
+	    return null;
+	  }
+	  if (cls == IntArray.class)
+	    result = new IntArray();
+	  else if (cls == LongArray.class)
+	    result = new LongArray();
+	  else
+	    result = new DoubleArray();
+	  result.read(in);
+	  return result;
+	}
+      };
+    }
+  };
+
+  /**
+   * Returns the number of array elements.
+   *
+   * @return the number of elements
+   */
+  public abstract int size();
+
+  /**
+   * Returns the specified element.
+   *
+   * @param index the index of the element
+   * @return the value
+   */
+  public abstract Number get(int index);
+
+  /**
+   * Returns the capacity of the primitive array.
+   *
+   * @return the capacity
+   */
+  protected abstract int capacity();
+
+  /**
+   * Resizes the primitive array, keeping the values that fit.
+   *
+   * @param capacity the new capacity
+   */
+  protected abstract void resize(int capacity);
+
+  /**
+   * Writes the specified element.
+   *
+   * @param writer the writer to use
+   * @param index the index of the element
+   * @throws IOException if writing fails
+   */
+  protected abstract void writeValue(JsonWriter writer, int index) throws IOException;
+
+  /**
+   * Reads the next value into the specified element.
+   *
+   * @param reader the reader to use
+   * @param index the index of the element
+   * @throws IOException if reading fails
+   * @throws NumberFormatException if the value does not fit the primitive type
+   */
+  protected abstract void readValue(JsonReader reader, int index) throws IOException;
+
+  /**
+   * Generates the Json array from the primitive values.
+   *
+   * @return the generated array
+   */
+  protected JsonArray materialize() {
+    JsonArray	result;
+    int		i;
+    int		size;
+
+    size   = size();
+    result = new JsonArray(size);
+    for (i = 0; i < size; i++)
+      result.add(get(i));
+
+    return result;
+  }
+
+  /**
+   * Returns the underlying json element, generating it if necessary.
+   *
+   * @return the JSON element
+   */
+  @Override
+  public synchronized JsonArray toJson() {
+    if (m_Data == null)
+      m_Data = materialize();
+    return m_Data;
+  }
+
+  /**
+   * Writes the primitive values to the writer.
+   *
+   * @param writer the writer to use
+   * @throws IOException if writing fails
+   */
+  @Override
+  public void write(JsonWriter writer) throws IOException {
+    int		i;
+    int		size;
+
+    size = size();
+    writer.beginArray();
+    for (i = 0; i < size; i++)
+      writeValue(writer, i);
+    writer.endArray();
+  }
+
+  /**
+   * Reads a homogeneous numeric array straight into the primitive array,
+   * replacing the current values.
+   *
+   * @param reader the reader to use, positioned at the array
+   * @throws IOException if reading fails
+   * @throws NumberFormatException if an element does not fit the primitive type
+   */
+  protected synchronized void read(JsonReader reader) throws IOException {
+    int		size;
+
+    m_Data = null;
+    resize(INITIAL_CAPACITY);
+    size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == capacity())
+	resize(size * 2);
+      readValue(reader, size++);
+    }
+    reader.endArray();
+    if (size < capacity())
+      resize(size);
+  }
+
+  /**
+   * Returns a string representation with optional pretty-printing.
+   * Writes the primitive values directly.
+   *
+   * @param indentation if >0 then pretty printed
+   * @return the string representation
+   */
+  @Override
+  public String dump(int indentation) {
+    StringWriter	result;
+    JsonWriter		writer;
+
+    result = new StringWriter();
+    try {
+      writer = JsonCodec.get(indentation).newJsonWriter(result);
+      write(writer);
+      writer.flush();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to write array!", e);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Parses the json string into the array.
+   *
+   * @param json the string to parse
+   * @param array the array to parse into
+   * @return the array
+   * @throws NumberFormatException if an element does not fit the primitive type
+   */
+  protected static <T extends NumericArray> T parse(String json, T array) {
+    try {
+      array.read(JsonCodec.compact().newJsonReader(new StringReader(json)));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to parse numeric array!", e);
+    }
+    return array;
+  }
+}
@@ -0,0 +1,462 @@
+/*
+ * BulkExecution.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.request;
+
+import com.github.fracpete.requests4j.event.RequestExecutionEvent;
+import com.github.fracpete.requests4j.event.RequestExecutionListener;
+import com.github.fracpete.requests4j.event.RequestFailureEvent;
+import com.github.fracpete.requests4j.event.RequestFailureListener;
+import com.github.fracpete.requests4j.response.Response;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EventObject;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Executes a collection of requests asynchronously, with at most the
+ * specified number of requests being in flight at any time. Per-host
+ * limits are handled by the dispatcher of the client the requests use.
+ * <br>
+ * In buffered mode, the successful executions can be retrieved in
+ * completion order via the iterator. A request only counts as finished
+ * once its result has been retrieved, i.e., the number of responses held
+ * in memory is bounded by the maximum concurrency as well. Otherwise,
+ * results are only passed on to the listeners.
+ * <br>
+ * Failed requests are reported to the failure listeners.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BulkExecution
+  implements Iterator<RequestExecutionEvent> {
+
+  /** the requests still to execute. */
+  protected Iterator<Request> m_Pending;
+
+  /** for preparing the requests before execution. */
+  protected Function<Request,Request> m_Preparer;
+
+  /** for creating the response objects. */
+  protected Supplier<? extends Response> m_Factory;
+
+  /** the maximum number of requests in flight. */
+  protected int m_MaxConcurrency;
+
+  /** whether to buffer the results for the iterator. */
+  protected boolean m_Buffered;
+
+  /** the completed executions. */
+  protected BlockingQueue<EventObject> m_Results;
+
+  /** the execution listeners. */
+  protected Set<RequestExecutionListener> m_ExecutionListeners;
+
+  /** the failure listeners. */
+  protected Set<RequestFailureListener> m_FailureListeners;
+
+  /** the number of requests that have been started. */
+  protected int m_Started;
+
+  /** the number of requests that are finished. */
+  protected int m_Finished;
+
+  /** the number of successful requests. */
+  protected int m_Succeeded;
+
+  /** the number of failed requests. */
+  protected int m_Failed;
+
+  /** the start timestamp. */
+  protected long m_StartTime;
+
+  /** the end timestamp. */
+  protected long m_EndTime;
+
+  /** the next result for the iterator. */
+  protected RequestExecutionEvent m_Next;
+
+  /** whether requests are currently being launched. */
+  protected boolean m_Launching;
+
+  /**
+   * Initializes the execution.
+   *
+   * @param requests		the requests to execute
+   * @param preparer		for preparing the requests before execution, can be null
+   * @param factory		for creating the response objects
+   * @param maxConcurrency	the maximum number of requests in flight
+   * @param buffered		whether to buffer results for the iterator
+   */
+  public BulkExecution(Collection<Request> requests, Function<Request,Request> preparer, Supplier<? extends Response> factory, int maxConcurrency, boolean buffered) {
+    if (maxConcurrency < 1)
+      throw new IllegalArgumentException("Maximum concurrency must be at least 1, provided: " + maxConcurrency);
+    m_Pending            = requests.iterator();
+    m_Preparer           = preparer;
+    m_Factory            = factory;
+    m_MaxConcurrency     = maxConcurrency;
+    m_Buffered           = buffered;
+    m_Results            = new LinkedBlockingQueue<>();
+    m_ExecutionListeners = new HashSet<>();
+    m_FailureListeners   = new HashSet<>();
+    m_StartTime          = -1;
+    m_EndTime            = -1;
+  }
+
+  /**
+   * Adds the execution listener.
+   *
+   * @param l		the listener
+   * @return		itself
+   */
+  public synchronized BulkExecution addExecutionListener(RequestExecutionListener l) {
+    m_ExecutionListeners.add(l);
+    return this;
+  }
+
+  /**
+   * Removes the execution listener.
+   *
+   * @param l		the listener
+   * @return		itself
+   */
+  public synchronized BulkExecution removeExecutionListener(RequestExecutionListener l) {
+    m_ExecutionListeners.remove(l);
+    return this;
+  }
+
+  /**
+   * Adds the failure listener.
+   *
+   * @param l		the listener
+   * @return		itself
+   */
+  public synchronized BulkExecution addFailureListener(RequestFailureListener l) {
+    m_FailureListeners.add(l);
+    return this;
+  }
+
+  /**
+   * Removes the failure listener.
+   *
+   * @param l		the listener
+   * @return		itself
+   */
+  public synchronized BulkExecution removeFailureListener(RequestFailureListener l) {
+    m_FailureListeners.remove(l);
+    return this;
+  }
+
+  /**
+   * Starts the execution.
+   *
+   * @return		itself
+   */
+  public BulkExecution start() {
+    synchronized (this) {
+      if (m_StartTime != -1)
+	throw new IllegalStateException("Execution already started!");
+      m_StartTime = System.currentTimeMillis();
+    }
+    launch();
+    return this;
+  }
+
+  /**
+   * Launches as many requests as the concurrency allows. If requests are
+   * already being launched (e.g., further up the stack, when a request
+   * completed synchronously), the active loop picks up the free slots,
+   * i.e., the stack does not grow with the number of requests.
+   */
+  protected void launch() {
+    Request	request;
+
+    synchronized (this) {
+      if (m_Launching)
+	return;
+      m_Launching = true;
+    }
+
+    while (true) {
+      synchronized (this) {
+	if ((m_Started - m_Finished >= m_MaxConcurrency) || !m_Pending.hasNext()) {
+	  m_Launching = false;
+	  if (isFinished() && (m_EndTime == -1)) {
+	    m_EndTime = System.currentTimeMillis();
+	    notifyAll();
+	  }
+	  return;
+	}
+	request = m_Pending.next();
+	m_Started++;
+      }
+      execute(request);
+    }
+  }
+
+  /**
+   * Executes the request asynchronously.
+   *
+   * @param request	the request to execute
+   */
+  protected void execute(Request request) {
+    final Request	req;
+
+    try {
+      req = (m_Preparer != null) ? m_Preparer.apply(request) : request;
+      req.executeAsync(m_Factory.get()).whenComplete((response, t) -> {
+	if (t != null)
+	  completed(new RequestFailureEvent(req, unwrap(t)));
+	else
+	  completed(new RequestExecutionEvent(req, response));
+      });
+    }
+    catch (Throwable t) {
+      completed(new RequestFailureEvent(request, t));
+    }
+  }
+
+  /**
+   * Unwraps completion exceptions.
+   *
+   * @param t		the exception to unwrap
+   * @return		the cause
+   */
+  protected Throwable unwrap(Throwable t) {
+    if ((t instanceof CompletionException) && (t.getCause() != null))
+      return t.getCause();
+    return t;
+  }
+
+  /**
+   * Gets called when a request has completed.
+   *
+   * @param e		the execution or failure event
+   */
+  protected void completed(EventObject e) {
+    synchronized (this) {
+      if (e instanceof RequestExecutionEvent)
+	m_Succeeded++;
+      else
+	m_Failed++;
+    }
+
+    if (e instanceof RequestExecutionEvent)
+      notifyExecutionListeners((RequestExecutionEvent) e);
+    else
+      notifyFailureListeners((RequestFailureEvent) e);
+
+    if (m_Buffered && (e instanceof RequestExecutionEvent)) {
+      m_Results.add(e);
+      synchronized (this) {
+	notifyAll();
+      }
+    }
+    else {
+      finished();
+    }
+  }
+
+  /**
+   * Marks a request as finished and launches the next one(s).
+   */
+  protected void finished() {
+    synchronized (this) {
+      m_Finished++;
+    }
+    launch();
+  }
+
+  /**
+   * Sends the event to all execution listeners.
+   *
+   * @param e		the event to send
+   */
+  protected void notifyExecutionListeners(RequestExecutionEvent e) {
+    List<RequestExecutionListener>	listeners;
+
+    synchronized (this) {
+      listeners = new ArrayList<>(m_ExecutionListeners);
+    }
+    for (RequestExecutionListener l: listeners)
+      l.requestExecuted(e);
+  }
+
+  /**
+   * Sends the event to all failure listeners.
+   *
+   * @param e		the event to send
+   */
+  protected void notifyFailureListeners(RequestFailureEvent e) {
+    List<RequestFailureListener>	listeners;
+
+    synchronized (this) {
+      listeners = new ArrayList<>(m_FailureListeners);
+    }
+    for (RequestFailureListener l: listeners)
+      l.requestFailed(e);
+  }
+
+  /**
+   * Returns whether all requests have been executed and their results
+   * retrieved (buffered mode).
+   *
+   * @return		true if finished
+   */
+  public synchronized boolean isFinished() {
+    return !m_Pending.hasNext() && (m_Started == m_Finished);
+  }
+
+  /**
+   * Returns true if there are more successful executions to retrieve.
+   * Blocks until the next execution is available.
+   *
+   * @return		true if more available
+   */
+  @Override
+  public boolean hasNext() {
+    if (!m_Buffered)
+      throw new IllegalStateException("Results are not buffered!");
+    if (m_StartTime == -1)
+      throw new IllegalStateException("Execution not started!");
+
+    synchronized (this) {
+      while (m_Next == null) {
+	m_Next = (RequestExecutionEvent) m_Results.poll();
+	if (m_Next != null)
+	  break;
+	if (isFinished())
+	  return false;
+	try {
+	  wait();
+	}
+	catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	  throw new IllegalStateException("Interrupted while waiting for results!", e);
+	}
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the next successful execution (in order of completion).
+   *
+   * @return		the execution event
+   */
+  @Override
+  public RequestExecutionEvent next() {
+    RequestExecutionEvent	result;
+
+    if (!hasNext())
+      throw new NoSuchElementException();
+
+    synchronized (this) {
+      result = m_Next;
+      m_Next = null;
+    }
+    finished();
+
+    return result;
+  }
+
+  /**
+   * Waits for all requests to finish. In buffered mode, any remaining
+   * results are discarded.
+   *
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public void waitFor() throws InterruptedException {
+    if (m_Buffered) {
+      while (hasNext())
+	next();
+    }
+    else {
+      synchronized (this) {
+	while (!isFinished())
+	  wait();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of requests that have been started so far.
+   *
+   * @return		the number of requests
+   */
+  public synchronized int started() {
+    return m_Started;
+  }
+
+  /**
+   * Returns the number of requests that were executed successfully so far.
+   *
+   * @return		the number of requests
+   */
+  public synchronized int succeeded() {
+    return m_Succeeded;
+  }
+
+  /**
+   * Returns the number of requests that failed so far.
+   *
+   * @return		the number of requests
+   */
+  public synchronized int failed() {
+    return m_Failed;
+  }
+
+  /**
+   * Returns the time elapsed since the start (up to the end, if finished).
+   *
+   * @return		the time in msec
+   */
+  public synchronized long elapsed() {
+    if (m_StartTime == -1)
+      return 0;
+    if (m_EndTime == -1)
+      return System.currentTimeMillis() - m_StartTime;
+    return m_EndTime - m_StartTime;
+  }
+
+  /**
+   * Returns the number of completed requests (successful or failed) per second.
+   *
+   * @return		the throughput
+   */
+  public synchronized double throughput() {
+    long	elapsed;
+
+    elapsed = elapsed();
+    if (elapsed == 0)
+      return 0.0;
+    return (m_Succeeded + m_Failed) * 1000.0 / elapsed;
+  }
+
+  /**
+   * Returns a short description of the execution.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "started=" + started()
+      + ", succeeded=" + succeeded()
+      + ", failed=" + failed()
+      + ", elapsed=" + elapsed() + "ms"
+      + ", throughput=" + throughput() + "/s";
+  }
+}
@@ -0,0 +1,474 @@
+/*
+ * EventSource.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.request;
+
+import com.github.fracpete.requests4j.core.Scheduler;
+import com.github.fracpete.requests4j.event.RequestFailureEvent;
+import com.github.fracpete.requests4j.event.ServerSentEvent;
+import com.github.fracpete.requests4j.event.ServerSentEventListener;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okio.BufferedSource;
+import okio.ByteString;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client for Server-Sent Events (text/event-stream). Parses the events
+ * incrementally from the connection and dispatches them to the listeners
+ * as soon as they are complete. Lost connections get re-established after
+ * the reconnection delay (which the server can override), sending the
+ * last event ID along.
+ * <br>
+ * Connections are established asynchronously via the dispatcher of the
+ * request's client. Reading the stream occupies a thread of the
+ * dispatcher's executor (but not a dispatcher slot) for the lifetime of
+ * the connection, i.e., with a session using virtual threads, large
+ * numbers of streams only cost a virtual thread each.
+ * <br>
+ * Failures get sent to the failure listeners of the request.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class EventSource {
+
+  /** the default reconnection delay in msec. */
+  public final static long DEFAULT_RECONNECT_DELAY = 3000;
+
+  /** the line endings. */
+  protected final static ByteString LINE_ENDINGS = ByteString.encodeUtf8("\r\n");
+
+  /** the UTF-8 byte order mark. */
+  protected final static ByteString BOM = ByteString.decodeHex("efbbbf");
+
+  /** the request to use as template. */
+  protected Request m_Request;
+
+  /** the listeners. */
+  protected Set<ServerSentEventListener> m_Listeners;
+
+  /** the client in use. */
+  protected OkHttpClient m_Client;
+
+  /** the reconnection delay in msec. */
+  protected volatile long m_ReconnectDelay;
+
+  /** the last event ID. */
+  protected volatile String m_LastEventID;
+
+  /** the current call. */
+  protected Call m_Call;
+
+  /** the scheduled reconnect. */
+  protected Future<?> m_Reconnect;
+
+  /** whether connected. */
+  protected volatile boolean m_Connected;
+
+  /** whether the source has been closed. */
+  protected volatile boolean m_Closed;
+
+  /** the number of reconnects. */
+  protected int m_Reconnects;
+
+  /** the data of the current event. */
+  protected StringBuilder m_Data;
+
+  /** the type of the current event. */
+  protected String m_Type;
+
+  /** whether to skip a line feed following a carriage return. */
+  protected boolean m_SkipLF;
+
+  /**
+   * Initializes the event source.
+   *
+   * @param request	the GET request to use
+   */
+  public EventSource(Request request) {
+    if (request.method() != Method.GET)
+      throw new IllegalArgumentException("Only GET requests supported, provided: " + request.method());
+    m_Request        = request;
+    m_Listeners      = new HashSet<>();
+    m_ReconnectDelay = DEFAULT_RECONNECT_DELAY;
+    m_Data           = new StringBuilder();
+  }
+
+  /**
+   * Adds the listener.
+   *
+   * @param l		the listener
+   * @return		itself
+   */
+  public synchronized EventSource addEventListener(ServerSentEventListener l) {
+    m_Listeners.add(l);
+    return this;
+  }
+
+  /**
+   * Removes the listener.
+   *
+   * @param l		the listener
+   * @return		itself
+   */
+  public synchronized EventSource removeEventListener(ServerSentEventListener l) {
+    m_Listeners.remove(l);
+    return this;
+  }
+
+  /**
+   * Sets the reconnection delay. Gets overridden by the server's retry field.
+   *
+   * @param value	the delay in msec
+   * @return		itself
+   */
+  public EventSource reconnectDelay(long value) {
+    if (value < 0)
+      value = 0;
+    m_ReconnectDelay = value;
+    return this;
+  }
+
+  /**
+   * Returns the reconnection delay.
+   *
+   * @return		the delay in msec
+   */
+  public long reconnectDelay() {
+    return m_ReconnectDelay;
+  }
+
+  /**
+   * Sets the last event ID, e.g., for resuming a stream.
+   *
+   * @param value	the ID, null for none
+   * @return		itself
+   */
+  public EventSource lastEventID(String value) {
+    m_LastEventID = value;
+    return this;
+  }
+
+  /**
+   * Returns the last event ID.
+   *
+   * @return		the ID, null if none
+   */
+  public String lastEventID() {
+    return m_LastEventID;
+  }
+
+  /**
+   * Returns the number of reconnects so far.
+   *
+   * @return		the number of reconnects
+   */
+  public synchronized int reconnects() {
+    return m_Reconnects;
+  }
+
+  /**
+   * Returns whether the stream is currently connected.
+   *
+   * @return		true if connected
+   */
+  public boolean isConnected() {
+    return m_Connected;
+  }
+
+  /**
+   * Returns whether the source has been closed.
+   *
+   * @return		true if closed
+   */
+  public boolean isClosed() {
+    return m_Closed;
+  }
+
+  /**
+   * Opens the stream.
+   *
+   * @return		itself
+   */
+  public synchronized EventSource open() {
+    if (m_Closed)
+      throw new IllegalStateException("Event source has been closed!");
+    if (m_Client != null)
+      throw new IllegalStateException("Event source already open!");
+    m_Client = m_Request.client().newBuilder()
+      .readTimeout(0, TimeUnit.MILLISECONDS)
+      .followRedirects(m_Request.allowRedirects())
+      .followSslRedirects(m_Request.allowRedirects())
+      .build();
+    connect();
+    return this;
+  }
+
+  /**
+   * Establishes the connection.
+   */
+  protected synchronized void connect() {
+    okhttp3.Request.Builder	builder;
+
+    if (m_Closed)
+      return;
+
+    m_Reconnect = null;
+    try {
+      builder = m_Request.buildRequest().newBuilder()
+	.header("Accept", "text/event-stream")
+	.header("Cache-Control", "no-cache");
+      if (m_LastEventID != null)
+	builder.header("Last-Event-ID", m_LastEventID);
+      m_Call = m_Client.newCall(builder.build());
+    }
+    catch (Exception e) {
+      failed(e, false);
+      return;
+    }
+
+    m_Call.enqueue(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	failed(e, true);
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull okhttp3.Response response) {
+	String	type;
+
+	type = response.header("Content-Type", "");
+	if (response.code() == 204) {
+	  response.close();
+	  close();
+	}
+	else if (response.code() != 200) {
+	  response.close();
+	  failed(new IOException("Unexpected response: " + response.code() + " " + response.message()), false);
+	}
+	else if (!type.toLowerCase().startsWith("text/event-stream")) {
+	  response.close();
+	  failed(new IOException("Unexpected content type: " + type), false);
+	}
+	else {
+	  // read on a separate thread to free up the dispatcher slot
+	  try {
+	    m_Client.dispatcher().executorService().execute(() -> read(response));
+	  }
+	  catch (Exception e) {
+	    response.close();
+	    failed(e, false);
+	  }
+	}
+      }
+    });
+  }
+
+  /**
+   * Reads the events from the stream until the stream ends or the source
+   * gets closed.
+   *
+   * @param response	the response to read from
+   */
+  protected void read(okhttp3.Response response) {
+    BufferedSource	source;
+    String		line;
+
+    m_Connected = true;
+    m_Data.setLength(0);
+    m_Type   = null;
+    m_SkipLF = false;
+    try (okhttp3.Response r = response) {
+      source = r.body().source();
+      if (source.rangeEquals(0, BOM))
+	source.skip(BOM.size());
+      while (!m_Closed && ((line = readLine(source)) != null))
+	processLine(line);
+      m_Connected = false;
+      reconnect();
+    }
+    catch (IOException e) {
+      m_Connected = false;
+      failed(e, true);
+    }
+    catch (Exception e) {
+      m_Connected = false;
+      failed(e, false);
+    }
+  }
+
+  /**
+   * Reads the next line. Lines can be terminated by CRLF, LF or CR.
+   *
+   * @param source	the source to read from
+   * @return		the line, null if end of stream reached
+   * @throws IOException	if reading fails
+   */
+  protected String readLine(BufferedSource source) throws IOException {
+    String	result;
+    long	index;
+
+    if (m_SkipLF) {
+      if (!source.request(1))
+	return null;
+      if (source.getBuffer().getByte(0) == '\n')
+	source.skip(1);
+      m_SkipLF = false;
+    }
+
+    index = source.indexOfElement(LINE_ENDINGS);
+    if (index == -1)
+      return null;
+    result   = source.readUtf8(index);
+    m_SkipLF = (source.readByte() == '\r');
+
+    return result;
+  }
+
+  /**
+   * Processes a line of the stream.
+   *
+   * @param line	the line to process
+   */
+  protected void processLine(String line) {
+    String	field;
+    String	value;
+    int		pos;
+
+    if (line.isEmpty()) {
+      dispatch();
+      return;
+    }
+    if (line.startsWith(":"))
+      return;
+
+    pos = line.indexOf(':');
+    if (pos == -1) {
+      field = line;
+      value = "";
+    }
+    else {
+      field = line.substring(0, pos);
+      value = line.substring(pos + 1);
+      if (value.startsWith(" "))
+	value = value.substring(1);
+    }
+
+    switch (field) {
+      case "event":
+	m_Type = value;
+	break;
+      case "data":
+	m_Data.append(value).append('\n');
+	break;
+      case "id":
+	if (value.indexOf('\0') == -1)
+	  m_LastEventID = value;
+	break;
+      case "retry":
+	if (!value.isEmpty() && value.chars().allMatch(c -> (c >= '0') && (c <= '9'))) {
+	  try {
+	    m_ReconnectDelay = Long.parseLong(value);
+	  }
+	  catch (NumberFormatException e) {
+	    // ignored
+	  }
+	}
+	break;
+      default:
+	// ignored
+    }
+  }
+
+  /**
+   * Dispatches the current event, if any data has been received.
+   */
+  protected void dispatch() {
+    ServerSentEvent	event;
+    String		type;
+
+    type   = ((m_Type == null) || m_Type.isEmpty()) ? "message" : m_Type;
+    m_Type = null;
+    if (m_Data.length() == 0)
+      return;
+
+    event = new ServerSentEvent(this, m_LastEventID, type, m_Data.substring(0, m_Data.length() - 1));
+    m_Data.setLength(0);
+    notifyEventListeners(event);
+  }
+
+  /**
+   * Sends the event to all listeners.
+   *
+   * @param e		the event to send
+   */
+  protected synchronized void notifyEventListeners(ServerSentEvent e) {
+    for (ServerSentEventListener l: m_Listeners)
+      l.eventReceived(e);
+  }
+
+  /**
+   * Gets called when the connection failed.
+   *
+   * @param t		the exception
+   * @param reconnect	whether to reconnect or to close the source
+   */
+  protected void failed(Throwable t, boolean reconnect) {
+    if (m_Closed)
+      return;
+    m_Request.notifyFailureListeners(new RequestFailureEvent(m_Request, t));
+    if (reconnect)
+      reconnect();
+    else
+      close();
+  }
+
+  /**
+   * Schedules a reconnect after the reconnection delay.
+   */
+  protected synchronized void reconnect() {
+    if (m_Closed)
+      return;
+    m_Call = null;
+    m_Reconnects++;
+    m_Reconnect = Scheduler.schedule(this::connect, m_ReconnectDelay);
+  }
+
+  /**
+   * Closes the source, cancelling the current connection and any
+   * scheduled reconnect.
+   */
+  public synchronized void close() {
+    m_Closed = true;
+    if (m_Reconnect != null) {
+      m_Reconnect.cancel(false);
+      m_Reconnect = null;
+    }
+    if (m_Call != null) {
+      m_Call.cancel();
+      m_Call = null;
+    }
+  }
+
+  /**
+   * Returns a short description of the source.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "url=" + m_Request.url()
+      + ", connected=" + isConnected()
+      + ", closed=" + isClosed()
+      + ", lastEventID=" + lastEventID();
+  }
+}
@@ -0,0 +1,429 @@
+/*
+ * HedgedCall.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.request;
+
+import com.github.fracpete.requests4j.core.Scheduler;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okio.Timeout;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Call that sends a duplicate (hedge) of the request if no response has
+ * been received after the delay determined by the {@link HedgingPolicy}
+ * and the budget allows it. The first response wins, the other call gets
+ * cancelled. Server errors (5xx) and failures only win if the other call
+ * fails as well (or was never sent).
+ * <br>
+ * {@link #execute()} sends the primary call on the calling thread, i.e.,
+ * not subject to the dispatcher's limits, only the hedge goes through the
+ * dispatcher. If the primary call lost and the hedge is still waiting for
+ * the dispatcher, the hedge gets abandoned rather than waited for, so that
+ * synchronous calls made on dispatcher threads cannot deadlock.
+ * {@link #enqueue(Callback)} sends both calls via the dispatcher.
+ * <br>
+ * The latency recorded with the policy is the one experienced by the
+ * caller, i.e., measured from sending the primary call.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class HedgedCall
+  implements Call {
+
+  /** the interval in msec for checking whether the hedge is still queued. */
+  public final static long WAIT_INTERVAL = 100;
+
+  /** the client to use. */
+  protected OkHttpClient m_Client;
+
+  /** the request. */
+  protected okhttp3.Request m_Request;
+
+  /** the policy. */
+  protected HedgingPolicy m_Policy;
+
+  /** the primary call. */
+  protected Call m_Primary;
+
+  /** the hedge, null if not sent. */
+  protected Call m_Hedge;
+
+  /** the scheduled hedge. */
+  protected Future<?> m_Timer;
+
+  /** the callback to notify. */
+  protected Callback m_Callback;
+
+  /** the time the primary call was sent. */
+  protected long m_Start;
+
+  /** the number of calls in flight. */
+  protected int m_Pending;
+
+  /** the server error response to fall back on. */
+  protected Response m_Fallback;
+
+  /** the failure to report if the other call fails as well. */
+  protected IOException m_Failure;
+
+  /** whether the outcome has been delivered. */
+  protected boolean m_Done;
+
+  /** whether the call has been executed. */
+  protected boolean m_Executed;
+
+  /** whether the call has been cancelled. */
+  protected volatile boolean m_Canceled;
+
+  /**
+   * Initializes the call.
+   *
+   * @param client	the client to use
+   * @param request	the request to send
+   * @param policy	the policy to use
+   */
+  public HedgedCall(OkHttpClient client, okhttp3.Request request, HedgingPolicy policy) {
+    m_Client  = client;
+    m_Request = request;
+    m_Policy  = policy;
+  }
+
+  @NotNull
+  @Override
+  public okhttp3.Request request() {
+    return m_Request;
+  }
+
+  /**
+   * Executes the primary call on the calling thread and waits for the
+   * outcome.
+   *
+   * @return		the response
+   * @throws IOException	if both calls failed or interrupted
+   */
+  @NotNull
+  @Override
+  public Response execute() throws IOException {
+    final CompletableFuture<Response>	result;
+    Response				response;
+
+    result = new CompletableFuture<>();
+    start(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	result.completeExceptionally(e);
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull Response response) {
+	result.complete(response);
+      }
+    });
+
+    try {
+      response = m_Primary.execute();
+    }
+    catch (IOException e) {
+      response = null;
+      failed(m_Primary, e);
+    }
+    if (response != null)
+      received(m_Primary, response);
+
+    try {
+      while (true) {
+	abandonQueuedHedge();
+	try {
+	  return result.get(WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	catch (TimeoutException e) {
+	  // the hedge may have been queued in the meantime
+	}
+      }
+    }
+    catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for: " + m_Request.url());
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+	throw (IOException) e.getCause();
+      throw new IOException("Failed to execute: " + m_Request.url(), e.getCause());
+    }
+  }
+
+  /**
+   * Sends the primary call and schedules the hedge.
+   *
+   * @param callback	the callback to notify with the outcome
+   */
+  @Override
+  public void enqueue(@NotNull Callback callback) {
+    start(callback);
+    m_Primary.enqueue(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	failed(call, e);
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+	received(call, response);
+      }
+    });
+  }
+
+  /**
+   * Creates the primary call and schedules the hedge.
+   *
+   * @param callback	the callback to notify with the outcome
+   */
+  protected void start(Callback callback) {
+    long	delay;
+
+    synchronized (this) {
+      if (m_Executed)
+	throw new IllegalStateException("Already executed!");
+      m_Executed = true;
+      m_Callback = callback;
+      m_Primary  = m_Client.newCall(m_Request);
+      m_Pending  = 1;
+      m_Start    = System.currentTimeMillis();
+    }
+    m_Policy.started();
+
+    delay = m_Policy.delay();
+    synchronized (this) {
+      if (!m_Canceled)
+	m_Timer = Scheduler.schedule(this::hedge, delay);
+    }
+  }
+
+  /**
+   * Sends the hedge, if still necessary and the budget allows it.
+   */
+  protected void hedge() {
+    Call	call;
+
+    synchronized (this) {
+      m_Timer = null;
+      if (m_Done || m_Canceled || !m_Policy.acquire())
+	return;
+      m_Hedge = m_Client.newCall(m_Request);
+      m_Pending++;
+      call = m_Hedge;
+    }
+
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	failed(call, e);
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+	received(call, response);
+      }
+    });
+  }
+
+  /**
+   * Gets called when one of the calls received a response.
+   *
+   * @param call	the call that received the response
+   * @param response	the response
+   * @throws IOException	if the callback fails to process the response
+   */
+  protected void received(Call call, Response response) throws IOException {
+    Response	old;
+    long	latency;
+
+    synchronized (this) {
+      m_Pending--;
+      if (m_Done) {
+	response.close();
+	return;
+      }
+      // wait for the other call?
+      if ((response.code() >= 500) && (m_Pending > 0)) {
+	old        = m_Fallback;
+	m_Fallback = response;
+	if (old != null)
+	  old.close();
+	return;
+      }
+      old        = m_Fallback;
+      m_Fallback = null;
+      latency    = System.currentTimeMillis() - m_Start;
+      finish(call);
+    }
+
+    if (old != null)
+      old.close();
+    m_Policy.record(latency);
+    if (call == m_Hedge)
+      m_Policy.hedgeWon();
+    try {
+      m_Callback.onResponse(this, response);
+    }
+    catch (IOException e) {
+      response.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets called when one of the calls failed.
+   *
+   * @param call	the call that failed
+   * @param e		the exception
+   */
+  protected void failed(Call call, IOException e) {
+    Response	fallback;
+
+    synchronized (this) {
+      m_Pending--;
+      if (m_Done)
+	return;
+      if ((m_Pending > 0) && !m_Canceled) {
+	m_Failure = e;
+	return;
+      }
+      fallback   = m_Fallback;
+      m_Fallback = null;
+      finish(call);
+    }
+
+    deliver(fallback, e);
+  }
+
+  /**
+   * Abandons the hedge if the primary call has lost (server error or
+   * failure) while the hedge is still waiting for the dispatcher. Delivers
+   * the outcome of the primary call instead.
+   */
+  protected void abandonQueuedHedge() {
+    Response	fallback;
+    IOException	failure;
+
+    synchronized (this) {
+      if (m_Done || (m_Hedge == null) || !m_Client.dispatcher().queuedCalls().contains(m_Hedge))
+	return;
+      fallback   = m_Fallback;
+      failure    = m_Failure;
+      m_Fallback = null;
+      finish(m_Primary);
+      m_Hedge.cancel();
+    }
+
+    deliver(fallback, failure);
+  }
+
+  /**
+   * Delivers the server error response or, if none, the failure.
+   *
+   * @param fallback	the server error response, can be null
+   * @param failure	the failure to report if no response
+   */
+  protected void deliver(Response fallback, IOException failure) {
+    if (fallback != null) {
+      try {
+	m_Callback.onResponse(this, fallback);
+      }
+      catch (IOException e) {
+	fallback.close();
+	System.err.println("Failed to process response: " + m_Request.url());
+	e.printStackTrace();
+      }
+    }
+    else {
+      m_Callback.onFailure(this, failure);
+    }
+  }
+
+  /**
+   * Marks the outcome as delivered, cancels the scheduled hedge and any
+   * outstanding call.
+   *
+   * @param winner	the call that determined the outcome, not to be cancelled
+   */
+  protected synchronized void finish(Call winner) {
+    m_Done = true;
+    if (m_Timer != null) {
+      m_Timer.cancel(false);
+      m_Timer = null;
+    }
+    if (m_Pending > 0) {
+      if ((m_Primary != null) && (m_Primary != winner))
+	m_Primary.cancel();
+      if ((m_Hedge != null) && (m_Hedge != winner))
+	m_Hedge.cancel();
+    }
+  }
+
+  /**
+   * Cancels the calls.
+   */
+  @Override
+  public void cancel() {
+    Call	primary;
+    Call	hedge;
+
+    synchronized (this) {
+      m_Canceled = true;
+      if (m_Timer != null) {
+	m_Timer.cancel(false);
+	m_Timer = null;
+      }
+      primary = m_Primary;
+      hedge   = m_Hedge;
+    }
+    if (primary != null)
+      primary.cancel();
+    if (hedge != null)
+      hedge.cancel();
+  }
+
+  @Override
+  public synchronized boolean isExecuted() {
+    return m_Executed;
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return m_Canceled;
+  }
+
+  @NotNull
+  @Override
+  public Timeout timeout() {
+    Call	primary;
+
+    synchronized (this) {
+      primary = m_Primary;
+    }
+    if (primary != null)
+      return primary.timeout();
+    return Timeout.NONE;
+  }
+
+  @NotNull
+  @Override
+  public Call clone() {
+    return new HedgedCall(m_Client, m_Request, m_Policy);
+  }
+}
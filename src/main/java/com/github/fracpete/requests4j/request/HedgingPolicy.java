@@ -0,0 +1,260 @@
+/*
+ * HedgingPolicy.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.request;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Policy for hedged requests: if a safe request (GET, HEAD, OPTIONS) has
+ * not completed after the hedging delay, a duplicate gets sent and the
+ * first response is used. The delay is either fixed or the observed
+ * latency percentile (e.g., p95) of the requests using this policy, with
+ * the fixed delay being used until enough latencies have been observed.
+ * <br>
+ * A token bucket limits the extra load: each request adds a fraction of a
+ * token (the budget ratio), each hedge consumes a whole one. The policy
+ * is meant to be shared by all requests to the same service, e.g., via
+ * a session.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see HedgedCall
+ */
+public class HedgingPolicy
+  implements Serializable {
+
+  /** the default delay in msec. */
+  public final static long DEFAULT_DELAY = 100;
+
+  /** the default budget ratio. */
+  public final static double DEFAULT_BUDGET_RATIO = 0.1;
+
+  /** the default maximum number of tokens. */
+  public final static double DEFAULT_MAX_TOKENS = 10;
+
+  /** the default number of latencies to keep. */
+  public final static int DEFAULT_WINDOW = 1000;
+
+  /** the default minimum number of latencies before using the percentile. */
+  public final static int DEFAULT_MIN_SAMPLES = 20;
+
+  /** the fixed delay in msec. */
+  protected long m_Delay;
+
+  /** the latency percentile to use as delay (0-100), -1 for fixed delay. */
+  protected double m_Percentile;
+
+  /** the minimum number of latencies before using the percentile. */
+  protected int m_MinSamples;
+
+  /** the fraction of a token added per request. */
+  protected double m_BudgetRatio;
+
+  /** the maximum number of tokens. */
+  protected double m_MaxTokens;
+
+  /** the available tokens. */
+  protected double m_Tokens;
+
+  /** the observed latencies (ring buffer). */
+  protected long[] m_Latencies;
+
+  /** the number of observed latencies. */
+  protected long m_Samples;
+
+  /** the cached percentile delay, -1 if needs recomputing. */
+  protected long m_PercentileDelay;
+
+  /** the number of samples when the percentile was computed. */
+  protected long m_PercentileSamples;
+
+  /** the number of requests. */
+  protected long m_Requests;
+
+  /** the number of hedges sent. */
+  protected long m_Hedges;
+
+  /** the number of hedges that won. */
+  protected long m_HedgeWins;
+
+  /**
+   * Initializes the policy with a fixed delay of {@link #DEFAULT_DELAY}.
+   */
+  public HedgingPolicy() {
+    m_Delay           = DEFAULT_DELAY;
+    m_Percentile      = -1;
+    m_MinSamples      = DEFAULT_MIN_SAMPLES;
+    m_BudgetRatio     = DEFAULT_BUDGET_RATIO;
+    m_MaxTokens       = DEFAULT_MAX_TOKENS;
+    m_Tokens          = DEFAULT_MAX_TOKENS;
+    m_Latencies       = new long[DEFAULT_WINDOW];
+    m_PercentileDelay = -1;
+  }
+
+  /**
+   * Sets the fixed delay, also used in percentile mode until enough
+   * latencies have been observed.
+   *
+   * @param value	the delay in msec
+   * @return		itself
+   */
+  public synchronized HedgingPolicy delay(long value) {
+    m_Delay = Math.max(0, value);
+    return this;
+  }
+
+  /**
+   * Uses the observed latency percentile as delay.
+   *
+   * @param value	the percentile (0-100), e.g., 95
+   * @return		itself
+   */
+  public synchronized HedgingPolicy percentile(double value) {
+    if ((value <= 0) || (value > 100))
+      throw new IllegalArgumentException("Percentile must be in (0, 100], provided: " + value);
+    m_Percentile      = value;
+    m_PercentileDelay = -1;
+    return this;
+  }
+
+  /**
+   * Returns the latency percentile used as delay.
+   *
+   * @return		the percentile, -1 if fixed delay
+   */
+  public synchronized double percentile() {
+    return m_Percentile;
+  }
+
+  /**
+   * Sets the minimum number of latencies before using the percentile.
+   *
+   * @param value	the minimum
+   * @return		itself
+   */
+  public synchronized HedgingPolicy minSamples(int value) {
+    m_MinSamples = Math.max(1, value);
+    return this;
+  }
+
+  /**
+   * Sets the budget, i.e., the fraction of requests that can be hedged
+   * and the maximum number of hedges that can be saved up for bursts.
+   *
+   * @param ratio	the fraction of a hedge each request adds, e.g., 0.1 for 10%
+   * @param maxTokens	the maximum number of saved up hedges
+   * @return		itself
+   */
+  public synchronized HedgingPolicy budget(double ratio, double maxTokens) {
+    m_BudgetRatio = Math.max(0, ratio);
+    m_MaxTokens   = Math.max(1, maxTokens);
+    m_Tokens      = Math.min(m_Tokens, m_MaxTokens);
+    return this;
+  }
+
+  /**
+   * Returns the delay after which to send the hedge.
+   *
+   * @return		the delay in msec
+   */
+  public synchronized long delay() {
+    long[]	sorted;
+    int		count;
+
+    if ((m_Percentile == -1) || (m_Samples < m_MinSamples))
+      return m_Delay;
+
+    // recompute after 10% of the window got replaced
+    if ((m_PercentileDelay == -1) || (m_Samples - m_PercentileSamples >= m_Latencies.length / 10)) {
+      count  = (int) Math.min(m_Samples, m_Latencies.length);
+      sorted = Arrays.copyOf(m_Latencies, count);
+      Arrays.sort(sorted);
+      m_PercentileDelay   = sorted[Math.min(count - 1, (int) Math.ceil(m_Percentile / 100.0 * count) - 1)];
+      m_PercentileSamples = m_Samples;
+    }
+
+    return m_PercentileDelay;
+  }
+
+  /**
+   * Records the latency of a completed request.
+   *
+   * @param latency	the latency in msec
+   */
+  public synchronized void record(long latency) {
+    m_Latencies[(int) (m_Samples % m_Latencies.length)] = latency;
+    m_Samples++;
+  }
+
+  /**
+   * Gets called when a request starts, adds to the budget.
+   */
+  public synchronized void started() {
+    m_Requests++;
+    m_Tokens = Math.min(m_MaxTokens, m_Tokens + m_BudgetRatio);
+  }
+
+  /**
+   * Tries to acquire a token for sending a hedge.
+   *
+   * @return		true if the hedge can be sent
+   */
+  public synchronized boolean acquire() {
+    if (m_Tokens < 1)
+      return false;
+    m_Tokens -= 1;
+    m_Hedges++;
+    return true;
+  }
+
+  /**
+   * Gets called when a hedge delivered the response.
+   */
+  public synchronized void hedgeWon() {
+    m_HedgeWins++;
+  }
+
+  /**
+   * Returns the number of requests.
+   *
+   * @return		the number of requests
+   */
+  public synchronized long requests() {
+    return m_Requests;
+  }
+
+  /**
+   * Returns the number of hedges sent.
+   *
+   * @return		the number of hedges
+   */
+  public synchronized long hedges() {
+    return m_Hedges;
+  }
+
+  /**
+   * Returns the number of hedges that delivered the response.
+   *
+   * @return		the number of hedges
+   */
+  public synchronized long hedgeWins() {
+    return m_HedgeWins;
+  }
+
+  /**
+   * Returns a short description of the policy.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "delay=" + delay()
+      + ", percentile=" + percentile()
+      + ", requests=" + requests()
+      + ", hedges=" + hedges()
+      + ", hedgeWins=" + hedgeWins();
+  }
+}
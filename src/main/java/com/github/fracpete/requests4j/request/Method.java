@@ -1,6 +1,6 @@
 /*
  * Method.java
- * Copyright (C) 2019-2020 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2019-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.requests4j.request;
@@ -11,24 +11,34 @@ package com.github.fracpete.requests4j.request;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public enum Method {
-  GET(false),
-  POST(true),
-  PUT(true),
-  PATCH(true),
-  HEAD(false),
-  DELETE(false),
-  OPTIONS(false);
+  GET(false, true, true),
+  POST(true, false, false),
+  PUT(true, false, true),
+  PATCH(true, false, false),
+  HEAD(false, true, true),
+  DELETE(false, false, true),
+  OPTIONS(false, true, true);
 
   /** whether it supports a body. */
   private boolean m_Body;
 
+  /** whether it is safe, i.e., read-only. */
+  private boolean m_Safe;
+
+  /** whether it is idempotent. */
+  private boolean m_Idempotent;
+
   /**
    * Initializes the enum.
    *
    * @param body	whether a body is supported
+   * @param safe	whether the method is safe (read-only)
+   * @param idempotent	whether the method is idempotent
    */
-  private Method(boolean body) {
-    m_Body = body;
+  private Method(boolean body, boolean safe, boolean idempotent) {
+    m_Body       = body;
+    m_Safe       = safe;
+    m_Idempotent = idempotent;
   }
 
   /**
@@ -39,4 +49,24 @@ public enum Method {
   public boolean hasBody() {
     return m_Body;
   }
+
+  /**
+   * Returns whether the method is safe (read-only), i.e., can be sent
+   * multiple times without side effects.
+   *
+   * @return		true if safe
+   */
+  public boolean isSafe() {
+    return m_Safe;
+  }
+
+  /**
+   * Returns whether the method is idempotent, i.e., sending it multiple
+   * times has the same effect as sending it once (safe methods, PUT, DELETE).
+   *
+   * @return		true if idempotent
+   */
+  public boolean isIdempotent() {
+    return m_Idempotent;
+  }
 }
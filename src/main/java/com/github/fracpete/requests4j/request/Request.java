@@ -1,6 +1,6 @@
 /*
  * Request.java
- * Copyright (C) 2019-2020 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2019-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.requests4j.request;
@@ -9,8 +9,11 @@ import com.github.fracpete.requests4j.attachment.AbstractAttachment;
 import com.github.fracpete.requests4j.auth.AbstractAuthentication;
 import com.github.fracpete.requests4j.auth.NoAuthentication;
 import com.github.fracpete.requests4j.core.ByteArrayRequestBody;
+import com.github.fracpete.requests4j.core.ClientRegistry;
 import com.github.fracpete.requests4j.core.EmptyRequestBody;
+import com.github.fracpete.requests4j.core.JsonRequestBody;
 import com.github.fracpete.requests4j.core.MediaTypeHelper;
+import com.github.fracpete.requests4j.core.NdJsonRequestBody;
 import com.github.fracpete.requests4j.core.Resendable;
 import com.github.fracpete.requests4j.core.StringRequestBody;
 import com.github.fracpete.requests4j.event.RequestExecutionEvent;
@@ -21,16 +24,23 @@ import com.github.fracpete.requests4j.form.FormData;
 import com.github.fracpete.requests4j.json.Array;
 import com.github.fracpete.requests4j.json.Dictionary;
 import com.github.fracpete.requests4j.json.Element;
+import com.github.fracpete.requests4j.response.AbstractResponse;
 import com.github.fracpete.requests4j.response.BasicResponse;
+import com.github.fracpete.requests4j.response.FileResponse;
+import com.github.fracpete.requests4j.response.LazyResponse;
 import com.github.fracpete.requests4j.response.Response;
 import okhttp3.Authenticator;
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.JavaNetCookieJar;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.reflect.Type;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.HttpURLConnection;
@@ -38,7 +48,9 @@ import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * For building a request.
@@ -78,6 +90,12 @@ public class Request
   /** the body string to send. */
   protected Object m_Body;
 
+  /** the hedging policy, null if not hedging. */
+  protected HedgingPolicy m_HedgingPolicy;
+
+  /** the retry policy, null if not retrying. */
+  protected RetryPolicy m_RetryPolicy;
+
   /** the form data. */
   protected FormData m_FormData;
 
@@ -127,6 +145,8 @@ public class Request
     m_Headers         = new HashMap<>();
     m_Parameters      = new HashMap<>();
     m_Body            = null;
+    m_HedgingPolicy   = null;
+    m_RetryPolicy     = null;
     m_BodyMediaType   = MediaTypeHelper.OCTECT_STREAM;
     m_FormData        = new FormData();
     m_ReadTimeout     = -1;
@@ -192,6 +212,9 @@ public class Request
 
   /**
    * Returns the client to use. Instantiates it if necessary.
+   * The client gets derived from the shared client in the {@link ClientRegistry}
+   * that matches timeouts and proxy, reusing its connection pool and dispatcher.
+   * Only cookies and authenticator are specific to this request.
    *
    * @return		the client
    */
@@ -200,9 +223,9 @@ public class Request
     Authenticator		authenticator;
 
     if (m_Client == null) {
-      builder = new OkHttpClient.Builder()
-        .cookieJar(new JavaNetCookieJar(cookies()))
-        .followRedirects(false);
+      builder = ClientRegistry.client(m_ConnectTimeout, m_ReadTimeout, m_WriteTimeout, m_Proxy, false)
+	.newBuilder()
+        .cookieJar(new JavaNetCookieJar(cookies()));
       try {
 	authenticator = auth().build();
 	if (authenticator != null)
@@ -212,16 +235,6 @@ public class Request
         System.err.println("Failed to build/set authenticator!");
         e.printStackTrace();
       }
-      if ((m_ReadTimeout != -1) || (m_ConnectTimeout != -1) || (m_WriteTimeout != -1)) {
-        if (m_ConnectTimeout != -1)
-          builder.connectTimeout(m_ConnectTimeout, TimeUnit.SECONDS);
-        if (m_ReadTimeout != -1)
-          builder.readTimeout(m_ReadTimeout, TimeUnit.SECONDS);
-        if (m_WriteTimeout != -1)
-          builder.writeTimeout(m_WriteTimeout, TimeUnit.SECONDS);
-      }
-      if (m_Proxy != null)
-        builder.proxy(m_Proxy);
       m_Client = builder.build();
     }
 
@@ -461,7 +474,9 @@ public class Request
   }
 
   /**
-   * The JSON body to send.
+   * The JSON body to send. The element gets serialized immediately, i.e.,
+   * later modifications are not sent. For streaming the element into the
+   * connection, use {@link #body(RequestBody)} with a {@link JsonRequestBody}.
    *
    * @param value	the body
    * @return		itself
@@ -475,7 +490,9 @@ public class Request
   }
 
   /**
-   * The JSON body to send.
+   * The JSON body to send. The element gets serialized immediately, i.e.,
+   * later modifications are not sent. For streaming the element into the
+   * connection, use {@link #body(RequestBody)} with a {@link JsonRequestBody}.
    *
    * @param value	the body
    * @return		itself
@@ -488,6 +505,71 @@ public class Request
     return this;
   }
 
+  /**
+   * The Json element to send, e.g., a {@link com.github.fracpete.requests4j.json.NumericArray}.
+   * The element gets written directly into the connection (with the content
+   * length determined upfront), i.e., it must not get modified until the
+   * request has been executed.
+   *
+   * @param value	the element
+   * @return		itself
+   */
+  public Request body(Element value) {
+    if (!m_Method.hasBody())
+      throw new IllegalArgumentException("Method " + m_Method + " does not support a body!");
+    m_Body = value;
+    m_BodyMediaType = MediaTypeHelper.APPLICATION_JSON_UTF8;
+    return this;
+  }
+
+  /**
+   * The body to send, e.g., a {@link NdJsonRequestBody}.
+   * Uses the body's content type.
+   *
+   * @param value	the body
+   * @return		itself
+   */
+  public Request body(RequestBody value) {
+    if (!m_Method.hasBody())
+      throw new IllegalArgumentException("Method " + m_Method + " does not support a body!");
+    m_Body = value;
+    m_BodyMediaType = value.contentType();
+    return this;
+  }
+
+  /**
+   * The object to send as Json, bound via the cached type adapters of
+   * {@link com.github.fracpete.requests4j.json.JsonCodec}. Strings, byte arrays,
+   * Json elements and request bodies are handled by the specific methods.
+   *
+   * @param value	the object
+   * @return		itself
+   */
+  public Request body(Object value) {
+    if (value instanceof String)
+      return body((String) value);
+    else if (value instanceof byte[])
+      return body((byte[]) value);
+    else if (value instanceof Element)
+      return body((Element) value);
+    else if (value instanceof RequestBody)
+      return body((RequestBody) value);
+    else
+      return body(value, value.getClass());
+  }
+
+  /**
+   * The object to send as Json, bound via the cached type adapters of
+   * {@link com.github.fracpete.requests4j.json.JsonCodec}.
+   *
+   * @param value	the object
+   * @param type	the type of the object, e.g., for generic collections
+   * @return		itself
+   */
+  public Request body(Object value, Type type) {
+    return body(new JsonRequestBody(value, type));
+  }
+
   /**
    * Returns the body.
    *
@@ -645,6 +727,50 @@ public class Request
     return m_MaxRedirects;
   }
 
+  /**
+   * Sets the hedging policy for safe requests (GET, HEAD, OPTIONS).
+   *
+   * @param value	the policy, null to disable hedging
+   * @return		itself
+   * @see		HedgedCall
+   */
+  public Request hedging(HedgingPolicy value) {
+    m_HedgingPolicy = value;
+    return this;
+  }
+
+  /**
+   * Returns the hedging policy.
+   *
+   * @return		the policy, null if not hedging
+   */
+  public HedgingPolicy hedging() {
+    return m_HedgingPolicy;
+  }
+
+  /**
+   * Sets the retry policy. Only requests that can resend their data get
+   * retried and, unless the policy allows otherwise, only idempotent ones.
+   *
+   * @param value	the policy, null to disable retries
+   * @return		itself
+   * @see		RetryingCall
+   * @see		#canResend()
+   */
+  public Request retry(RetryPolicy value) {
+    m_RetryPolicy = value;
+    return this;
+  }
+
+  /**
+   * Returns the retry policy.
+   *
+   * @return		the policy, null if not retrying
+   */
+  public RetryPolicy retry() {
+    return m_RetryPolicy;
+  }
+
   /**
    * Adds the execution listener.
    *
@@ -741,6 +867,15 @@ public class Request
     if (result && (m_Attachment != null))
       result = m_Attachment.canResend();
 
+    if (result && (m_Body instanceof RequestBody) && ((RequestBody) m_Body).isOneShot())
+      result = false;
+
+    if (result && (m_Body instanceof Resendable))
+      result = ((Resendable) m_Body).canResend();
+    // other bodies may only be writable once
+    else if (result && (m_Body instanceof RequestBody))
+      result = false;
+
     return result;
   }
 
@@ -791,94 +926,180 @@ public class Request
   }
 
   /**
-   * Executes the request.
+   * Builds the OkHttp request from the current configuration.
    *
-   * @throws Exception	if execution fails
+   * @return		the request
+   * @throws Exception	if building fails, e.g., invalid URL
    */
-  protected <T extends Response > T doExecute(T response) throws Exception {
+  protected okhttp3.Request buildRequest() throws Exception {
     okhttp3.Request.Builder 	builder;
-    okhttp3.Request		request;
     okhttp3.RequestBody		body;
-    okhttp3.Response		resp;
-    Call			call;
     URL				url;
 
-    url  = assembleURL();
-    body = null;
-    try {
-      builder = new okhttp3.Request.Builder()
-	.url(url);
+    url     = assembleURL();
+    body    = null;
+    builder = new okhttp3.Request.Builder()
+      .url(url);
+
+    switch (m_Method) {
+      case GET:
+	builder.get();
+	break;
+      case POST:
+	builder.post(new EmptyRequestBody());  // dummy, in case nothing is being posted
+	break;
+      case DELETE:
+	builder.delete();
+	break;
+      case HEAD:
+	builder.head();
+	break;
+    }
+
+    // headers
+    for (String header: headers().keySet())
+      builder.addHeader(header, headers().get(header));
 
+    // form data
+    if ((m_Method == Method.POST) && (m_FormData.size() > 0)) {
+      m_FormData.add(builder);
+    }
+    else if ((m_Method == Method.POST) && (m_Attachment != null) && m_Attachment.isValid()) {
+      builder.addHeader("Content-Disposition", m_Attachment.getContentDisposition());
+      builder.post(m_Attachment.getBody());
+    }
+    else if ((m_Body != null) && (m_Method.hasBody())) {
+      if (m_Body instanceof String)
+	body = new StringRequestBody(m_BodyMediaType, (String) m_Body);
+      else if (m_Body instanceof byte[])
+	body = new ByteArrayRequestBody(m_BodyMediaType, (byte[]) m_Body);
+      else if (m_Body instanceof Element)
+	body = new JsonRequestBody(m_BodyMediaType, (Element) m_Body, true);
+      else if (m_Body instanceof RequestBody)
+	body = (RequestBody) m_Body;
+      else
+	throw new IllegalStateException("Unhandled body type: " + m_Body.getClass().getName());
       switch (m_Method) {
 	case GET:
-	  builder.get();
+	  builder.method("GET", body);
 	  break;
 	case POST:
-	  builder.post(new EmptyRequestBody());  // dummy, in case nothing is being posted
+	  builder.post(body);
 	  break;
-	case DELETE:
-	  builder.delete();
+	case PUT:
+	  builder.put(body);
+	  break;
+	case PATCH:
+	  builder.patch(body);
 	  break;
-	case HEAD:
-	  builder.head();
+	case DELETE:
+	  builder.delete(body);
 	  break;
+	default:
+	  throw new IllegalStateException("Unhandled method: " + m_Method);
       }
+    }
 
-      // headers
-      for (String header: headers().keySet())
-        builder.addHeader(header, headers().get(header));
+    return builder.build();
+  }
 
-      // form data
-      if ((m_Method == Method.POST) && (m_FormData.size() > 0)) {
-	m_FormData.add(builder);
-      }
-      else if ((m_Method == Method.POST) && (m_Attachment != null) && m_Attachment.isValid()) {
-        builder.addHeader("Content-Disposition", m_Attachment.getContentDisposition());
-	builder.post(m_Attachment.getBody());
-      }
-      else if ((m_Body != null) && (m_Method.hasBody())) {
-	if (m_Body instanceof String)
-	  body = new StringRequestBody(m_BodyMediaType, (String) m_Body);
-	else if (m_Body instanceof byte[])
-	  body = new ByteArrayRequestBody(m_BodyMediaType, (byte[]) m_Body);
-	else
-	  throw new IllegalStateException("Unhandled body type: " + m_Body.getClass().getName());
-	switch (m_Method) {
-	  case GET:
-	    builder.method("GET", body);
-	    break;
-	  case POST:
-	    builder.post(body);
-	    break;
-	  case PUT:
-	    builder.put(body);
-	    break;
-	  case PATCH:
-	    builder.patch(body);
-	    break;
-	  case DELETE:
-	    builder.delete(body);
-	    break;
-	  default:
-	    throw new IllegalStateException("Unhandled method: " + m_Method);
+  /**
+   * Builds the OkHttp request from the current configuration and lets the
+   * response object adjust it, e.g., for adding headers.
+   *
+   * @param response	the response object that will get initialized
+   * @return		the request
+   * @throws Exception	if building fails, e.g., invalid URL
+   * @see		AbstractResponse#prepare(okhttp3.Request)
+   */
+  protected okhttp3.Request buildRequest(Response response) throws Exception {
+    okhttp3.Request	result;
+
+    result = buildRequest();
+    if (response instanceof AbstractResponse)
+      result = ((AbstractResponse) response).prepare(result);
+
+    return result;
+  }
+
+  /**
+   * Creates the call for the request. Requests that can resend their data
+   * get retried if a retry policy is set and the policy allows retries
+   * for the method.
+   *
+   * @param request	the request to send
+   * @return		the call
+   * @see		RetryingCall
+   */
+  protected Call newCall(okhttp3.Request request) {
+    if ((m_RetryPolicy != null) && m_RetryPolicy.isRetryable(m_Method) && canResend())
+      return new RetryingCall(this, request, m_RetryPolicy);
+    return newAttempt(request);
+  }
+
+  /**
+   * Creates the call for a single attempt of the request. Safe requests
+   * get hedged if a hedging policy is set.
+   *
+   * @param request	the request to send
+   * @return		the call
+   * @see		HedgedCall
+   */
+  protected Call newAttempt(okhttp3.Request request) {
+    if ((m_HedgingPolicy != null) && m_Method.isSafe())
+      return new HedgedCall(client(), request, m_HedgingPolicy);
+    return client().newCall(request);
+  }
+
+  /**
+   * Initializes the response object with the received response, closes
+   * the raw response and notifies the execution listeners.
+   * The raw response of a {@link LazyResponse} only gets closed in case
+   * of a redirect.
+   *
+   * @param resp	the raw response
+   * @param response	the response object to initialize
+   * @return		the response object
+   */
+  protected <T extends Response> T handleResponse(okhttp3.Response resp, T response) {
+    boolean	close;
+
+    close = true;
+    try {
+      response.init(resp);
+      close = !(response instanceof LazyResponse) || isRedirect(resp.code());
+    }
+    finally {
+      if (close) {
+	try {
+	  resp.close();
+	}
+	catch (Exception e) {
+	  // ignored
 	}
       }
+    }
 
-      request = builder.build();
-      call    = client().newCall(request);
-      resp    = call.execute();
-      response.init(resp);
+    notifyExecutionListeners(new RequestExecutionEvent(this, response));
 
-      try {
-	resp.close();
-      }
-      catch (Exception e) {
-        // ignored
-      }
+    return response;
+  }
 
-      notifyExecutionListeners(new RequestExecutionEvent(this, response));
+  /**
+   * Executes the request.
+   *
+   * @throws Exception	if execution fails
+   */
+  protected <T extends Response > T doExecute(T response) throws Exception {
+    okhttp3.Request		request;
+    okhttp3.Response		resp;
+    Call			call;
 
-      return response;
+    try {
+      request = buildRequest(response);
+      call    = newCall(request);
+      resp    = call.execute();
+      return handleResponse(resp, response);
     }
     catch (Throwable t) {
       notifyFailureListeners(new RequestFailureEvent(this, t));
@@ -890,42 +1111,200 @@ public class Request
     }
   }
 
+  /**
+   * Checks whether the response is a redirect that needs following.
+   * Increments the redirect counter in that case.
+   *
+   * @param response	the response to check
+   * @return		the URL to redirect to, null if not a redirect
+   * @throws IOException	if redirects not allowed or maximum number of redirects reached
+   */
+  protected String nextRedirect(Response response) throws IOException {
+    String 		result;
+    String 		server;
+
+    if (!isRedirect(response.statusCode()))
+      return null;
+
+    if (!m_AllowRedirects)
+      throw new IOException("Received a redirect and no redirects allowed!");
+
+    m_RedirectCount++;
+    if (m_RedirectCount >= m_MaxRedirects)
+      throw new IOException(m_MaxRedirects + " redirects were generated when trying to access " + m_URL);
+
+    result = response.rawResponse().headers("Location").get(0);
+    // relative redirect?
+    if (result.startsWith("/")) {
+      server = m_URL.getProtocol() + "://" + m_URL.getHost();
+      if (m_URL.getPort() != -1)
+	server += ":" + m_URL.getPort();
+      result = server + result;
+    }
+    System.out.println("Redirect, trying to open: " + result);
+
+    return result;
+  }
+
   /**
    * Executes the request.
    *
    * @throws Exception	if execution fails
    */
   public <T extends Response > T execute(T response) throws Exception {
-    int 		status;
     String 		newURL;
-    String 		server;
 
     response        = doExecute(response);
-    status          = response.statusCode();
     m_RedirectCount = 0;
 
-    while (isRedirect(status)) {
-      if (!m_AllowRedirects)
-	throw new IOException("Received a redirect and no redirects allowed!");
-
-      m_RedirectCount++;
-      if (m_RedirectCount >= m_MaxRedirects)
-	throw new IOException(m_MaxRedirects + " redirects were generated when trying to access " + m_URL);
-
-      newURL = response.rawResponse().headers("Location").get(0);
-      // relative redirect?
-      if (newURL.startsWith("/")) {
-        server = m_URL.getProtocol() + "://" + m_URL.getHost();
-        if (m_URL.getPort() != -1)
-          server += ":" + m_URL.getPort();
-        newURL = server + newURL;
-      }
-      System.out.println("Redirect, trying to open: " + newURL);
+    while ((newURL = nextRedirect(response)) != null) {
       url(newURL);
       response = doExecute(response);
-      status   = response.statusCode();
     }
 
     return response;
   }
+
+  /**
+   * Downloads the file using concurrent range requests (GET only).
+   * Falls back to a single request if the server does not support ranges.
+   *
+   * @param response	the response to fill in
+   * @param segments	the number of concurrent segments
+   * @return		the response
+   * @throws Exception	if execution fails
+   * @see		SegmentedDownload
+   */
+  public FileResponse executeSegmented(FileResponse response, int segments) throws Exception {
+    return new SegmentedDownload(this, response, segments).execute();
+  }
+
+  /**
+   * Executes the request asynchronously.
+   *
+   * @return		the future response
+   */
+  public CompletableFuture<BasicResponse> executeAsync() {
+    return executeAsync(new BasicResponse());
+  }
+
+  /**
+   * Executes the request asynchronously, using OkHttp's dispatcher rather
+   * than blocking the calling thread. Redirects get followed the same way
+   * as with {@link #execute(Response)}. Cancelling the future cancels the
+   * underlying call.
+   *
+   * @param response	the response object to initialize
+   * @return		the future response
+   */
+  public <T extends Response> CompletableFuture<T> executeAsync(T response) {
+    final CompletableFuture<T>		result;
+    final AtomicReference<Call>		current;
+
+    result          = new CompletableFuture<>();
+    current         = new AtomicReference<>();
+    m_RedirectCount = 0;
+
+    result.whenComplete((r, t) -> {
+      Call call = current.get();
+      if (result.isCancelled() && (call != null))
+	call.cancel();
+    });
+
+    doExecuteAsync(response, result, current)
+      .thenCompose(r -> followRedirects(r, result, current))
+      .whenComplete((r, t) -> {
+	if ((t instanceof CompletionException) && (t.getCause() != null))
+	  t = t.getCause();
+	if (t != null)
+	  result.completeExceptionally(t);
+	else
+	  result.complete(r);
+      });
+
+    return result;
+  }
+
+  /**
+   * Follows the redirect, if any, by chaining the next hop.
+   *
+   * @param response	the response of the previous hop
+   * @param result	the future handed to the caller, used for checking whether it got cancelled
+   * @param current	for storing the call of the hop, used for cancelling it
+   * @return		the future of the final response
+   */
+  protected <T extends Response> CompletableFuture<T> followRedirects(final T response, final CompletableFuture<T> result, final AtomicReference<Call> current) {
+    CompletableFuture<T>	failed;
+    String			newURL;
+
+    try {
+      newURL = nextRedirect(response);
+      if (newURL == null)
+	return CompletableFuture.completedFuture(response);
+      url(newURL);
+    }
+    catch (Throwable t) {
+      failed = new CompletableFuture<>();
+      failed.completeExceptionally(t);
+      return failed;
+    }
+
+    return doExecuteAsync(response, result, current)
+      .thenCompose(r -> followRedirects(r, result, current));
+  }
+
+  /**
+   * Enqueues the request (a single hop, not following any redirects).
+   *
+   * @param response	the response object to initialize
+   * @param result	the future handed to the caller, used for checking whether it got cancelled
+   * @param current	for storing the call, used for cancelling it
+   * @return		the future that gets completed once the response has been received
+   */
+  protected <T extends Response> CompletableFuture<T> doExecuteAsync(final T response, final CompletableFuture<T> result, final AtomicReference<Call> current) {
+    final CompletableFuture<T>	future;
+    final Call			call;
+
+    future = new CompletableFuture<>();
+    try {
+      call = newCall(buildRequest(response));
+    }
+    catch (Throwable t) {
+      m_FormData.cleanUp();
+      notifyFailureListeners(new RequestFailureEvent(this, t));
+      future.completeExceptionally(t);
+      return future;
+    }
+
+    current.set(call);
+    if (result.isCancelled())
+      call.cancel();
+
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	m_FormData.cleanUp();
+	notifyFailureListeners(new RequestFailureEvent(Request.this, e));
+	future.completeExceptionally(e);
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull okhttp3.Response resp) {
+	try {
+	  handleResponse(resp, response);
+	}
+	catch (Throwable t) {
+	  notifyFailureListeners(new RequestFailureEvent(Request.this, t));
+	  future.completeExceptionally(t);
+	  return;
+	}
+	finally {
+	  m_FormData.cleanUp();
+	}
+	future.complete(response);
+      }
+    });
+
+    return future;
+  }
 }
@@ -0,0 +1,377 @@
+/*
+ * RetryPolicy.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.request;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy for retrying requests that failed with an exception or received
+ * a status code that indicates a transient problem (default: 429, 502,
+ * 503, 504). Only requests that can resend their data get retried and, by
+ * default, only idempotent ones (GET, HEAD, OPTIONS, PUT, DELETE), since
+ * e.g. a POST that timed out may already have been processed by the server.
+ * <br>
+ * The wait between attempts uses exponential backoff with decorrelated
+ * jitter, i.e., a random value between the base delay and three times the
+ * previous wait, capped by the maximum delay. A Retry-After header sent
+ * by the server (seconds or HTTP date) takes precedence; if it exceeds the
+ * maximum delay, no further attempt is made.
+ * <br>
+ * A token bucket limits the extra load: each request adds a fraction of a
+ * token (the budget ratio), each retry consumes a whole one. The policy
+ * is meant to be shared by all requests to the same service, e.g., via
+ * a session.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see RetryingCall
+ */
+public class RetryPolicy
+  implements Serializable {
+
+  /** the default maximum number of attempts. */
+  public final static int DEFAULT_MAX_ATTEMPTS = 3;
+
+  /** the default base delay in msec. */
+  public final static long DEFAULT_BASE_DELAY = 100;
+
+  /** the default maximum delay in msec. */
+  public final static long DEFAULT_MAX_DELAY = 10000;
+
+  /** the default budget ratio. */
+  public final static double DEFAULT_BUDGET_RATIO = 0.1;
+
+  /** the default maximum number of tokens. */
+  public final static double DEFAULT_MAX_TOKENS = 10;
+
+  /** the default status codes to retry. */
+  public final static int[] DEFAULT_STATUS_CODES = {429, 502, 503, 504};
+
+  /** the maximum number of attempts (incl the first one). */
+  protected int m_MaxAttempts;
+
+  /** the base delay in msec. */
+  protected long m_BaseDelay;
+
+  /** the maximum delay in msec. */
+  protected long m_MaxDelay;
+
+  /** the status codes to retry. */
+  protected Set<Integer> m_StatusCodes;
+
+  /** the exceptions to retry. */
+  protected List<Class<? extends Throwable>> m_Exceptions;
+
+  /** whether to use the Retry-After header. */
+  protected boolean m_RetryAfter;
+
+  /** whether to retry non-idempotent methods as well. */
+  protected boolean m_NonIdempotent;
+
+  /** the fraction of a token added per request. */
+  protected double m_BudgetRatio;
+
+  /** the maximum number of tokens. */
+  protected double m_MaxTokens;
+
+  /** the available tokens. */
+  protected double m_Tokens;
+
+  /** the number of requests. */
+  protected long m_Requests;
+
+  /** the number of retries. */
+  protected long m_Retries;
+
+  /** the number of retries denied by the budget. */
+  protected long m_Denied;
+
+  /**
+   * Initializes the policy with the default settings.
+   */
+  public RetryPolicy() {
+    m_MaxAttempts   = DEFAULT_MAX_ATTEMPTS;
+    m_BaseDelay     = DEFAULT_BASE_DELAY;
+    m_MaxDelay      = DEFAULT_MAX_DELAY;
+    m_StatusCodes   = new HashSet<>();
+    for (int code: DEFAULT_STATUS_CODES)
+      m_StatusCodes.add(code);
+    m_Exceptions    = new ArrayList<>();
+    m_Exceptions.add(IOException.class);
+    m_RetryAfter    = true;
+    m_NonIdempotent = false;
+    m_BudgetRatio   = DEFAULT_BUDGET_RATIO;
+    m_MaxTokens     = DEFAULT_MAX_TOKENS;
+    m_Tokens        = DEFAULT_MAX_TOKENS;
+  }
+
+  /**
+   * Sets the maximum number of attempts, including the first one.
+   *
+   * @param value	the maximum, 1 disables retries
+   * @return		itself
+   */
+  public synchronized RetryPolicy maxAttempts(int value) {
+    m_MaxAttempts = Math.max(1, value);
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of attempts, including the first one.
+   *
+   * @return		the maximum
+   */
+  public synchronized int maxAttempts() {
+    return m_MaxAttempts;
+  }
+
+  /**
+   * Sets the base and the maximum delay for the backoff.
+   *
+   * @param base	the base delay in msec
+   * @param max		the maximum delay in msec, also the limit for Retry-After
+   * @return		itself
+   */
+  public synchronized RetryPolicy backoff(long base, long max) {
+    m_BaseDelay = Math.max(1, base);
+    m_MaxDelay  = Math.max(m_BaseDelay, max);
+    return this;
+  }
+
+  /**
+   * Sets the status codes to retry.
+   *
+   * @param codes	the codes, none to not retry any status codes
+   * @return		itself
+   */
+  public synchronized RetryPolicy statusCodes(int... codes) {
+    m_StatusCodes.clear();
+    for (int code: codes)
+      m_StatusCodes.add(code);
+    return this;
+  }
+
+  /**
+   * Sets the exceptions (incl subclasses) to retry.
+   *
+   * @param classes	the exception classes, none to not retry any exceptions
+   * @return		itself
+   */
+  @SafeVarargs
+  public final synchronized RetryPolicy exceptions(Class<? extends Throwable>... classes) {
+    m_Exceptions.clear();
+    m_Exceptions.addAll(Arrays.asList(classes));
+    return this;
+  }
+
+  /**
+   * Sets whether to use the Retry-After header sent by the server.
+   *
+   * @param value	true if to use it
+   * @return		itself
+   */
+  public synchronized RetryPolicy retryAfter(boolean value) {
+    m_RetryAfter = value;
+    return this;
+  }
+
+  /**
+   * Sets whether to retry non-idempotent methods (POST, PATCH) as well.
+   * Only enable this if the server de-duplicates requests (e.g., via
+   * idempotency keys), otherwise side effects may happen more than once.
+   *
+   * @param value	true if to retry non-idempotent methods
+   * @return		itself
+   */
+  public synchronized RetryPolicy nonIdempotent(boolean value) {
+    m_NonIdempotent = value;
+    return this;
+  }
+
+  /**
+   * Checks whether requests with the method should be retried.
+   *
+   * @param method	the method
+   * @return		true if to retry
+   */
+  public synchronized boolean isRetryable(Method method) {
+    return method.isIdempotent() || m_NonIdempotent;
+  }
+
+  /**
+   * Sets the budget, i.e., the fraction of requests that can be retried
+   * and the maximum number of retries that can be saved up for bursts.
+   *
+   * @param ratio	the fraction of a retry each request adds, e.g., 0.1 for 10%
+   * @param maxTokens	the maximum number of saved up retries
+   * @return		itself
+   */
+  public synchronized RetryPolicy budget(double ratio, double maxTokens) {
+    m_BudgetRatio = Math.max(0, ratio);
+    m_MaxTokens   = Math.max(1, maxTokens);
+    m_Tokens      = Math.min(m_Tokens, m_MaxTokens);
+    return this;
+  }
+
+  /**
+   * Checks whether the status code should be retried.
+   *
+   * @param code	the status code
+   * @return		true if to retry
+   */
+  public synchronized boolean isRetryable(int code) {
+    return m_StatusCodes.contains(code);
+  }
+
+  /**
+   * Checks whether the exception should be retried.
+   *
+   * @param t		the exception
+   * @return		true if to retry
+   */
+  public synchronized boolean isRetryable(Throwable t) {
+    for (Class<? extends Throwable> cls: m_Exceptions) {
+      if (cls.isInstance(t))
+	return true;
+    }
+    return false;
+  }
+
+  /**
+   * Determines the wait before the next attempt.
+   *
+   * @param previous	the previous wait in msec, 0 for the first retry
+   * @param response	the response that triggered the retry, null if failed with an exception
+   * @return		the wait in msec, -1 if the server asked to wait longer than the maximum delay
+   */
+  public synchronized long delay(long previous, okhttp3.Response response) {
+    long	retryAfter;
+    long	upper;
+
+    if (m_RetryAfter && (response != null)) {
+      retryAfter = parseRetryAfter(response.header("Retry-After"));
+      if (retryAfter > m_MaxDelay)
+	return -1;
+      if (retryAfter > -1)
+	return retryAfter;
+    }
+
+    // decorrelated jitter
+    upper = Math.max(m_BaseDelay, previous * 3);
+    return Math.min(m_MaxDelay, ThreadLocalRandom.current().nextLong(m_BaseDelay, upper + 1));
+  }
+
+  /**
+   * Parses the value of a Retry-After header, either delay seconds or an
+   * HTTP date. Negative values are invalid, values too large to be
+   * represented in msec result in {@link Long#MAX_VALUE}.
+   *
+   * @param value	the header value, can be null
+   * @return		the delay in msec, -1 if not present or invalid
+   */
+  public static long parseRetryAfter(String value) {
+    ZonedDateTime	date;
+    long		seconds;
+
+    if (value == null)
+      return -1;
+    value = value.trim();
+
+    if (value.matches("[0-9]+")) {
+      try {
+	seconds = Long.parseLong(value);
+	return Math.multiplyExact(seconds, 1000L);
+      }
+      catch (NumberFormatException | ArithmeticException e) {
+	// too long to wait
+	return Long.MAX_VALUE;
+      }
+    }
+    if (value.matches("[-+]?[0-9]+"))
+      return -1;
+
+    try {
+      date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+      return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+    }
+    catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Gets called when a request starts, adds to the budget.
+   */
+  public synchronized void started() {
+    m_Requests++;
+    m_Tokens = Math.min(m_MaxTokens, m_Tokens + m_BudgetRatio);
+  }
+
+  /**
+   * Tries to acquire a token for a retry.
+   *
+   * @return		true if the retry can be made
+   */
+  public synchronized boolean acquire() {
+    if (m_Tokens < 1) {
+      m_Denied++;
+      return false;
+    }
+    m_Tokens -= 1;
+    m_Retries++;
+    return true;
+  }
+
+  /**
+   * Returns the number of requests.
+   *
+   * @return		the number of requests
+   */
+  public synchronized long requests() {
+    return m_Requests;
+  }
+
+  /**
+   * Returns the number of retries.
+   *
+   * @return		the number of retries
+   */
+  public synchronized long retries() {
+    return m_Retries;
+  }
+
+  /**
+   * Returns the number of retries denied by the budget.
+   *
+   * @return		the number of denied retries
+   */
+  public synchronized long denied() {
+    return m_Denied;
+  }
+
+  /**
+   * Returns a short description of the policy.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "maxAttempts=" + maxAttempts()
+      + ", requests=" + requests()
+      + ", retries=" + retries()
+      + ", denied=" + denied();
+  }
+}
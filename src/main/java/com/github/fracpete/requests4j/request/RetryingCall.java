@@ -0,0 +1,337 @@
+/*
+ * RetryingCall.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.request;
+
+import com.github.fracpete.requests4j.core.Scheduler;
+import com.github.fracpete.requests4j.event.RequestFailureEvent;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import okio.Timeout;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+
+/**
+ * Call that makes further attempts as long as the {@link RetryPolicy}
+ * deems the failure or status code retryable, the maximum number of
+ * attempts has not been reached and the budget allows it. The failure
+ * listeners of the request get notified of each failed attempt that gets
+ * retried.
+ * <br>
+ * {@link #execute()} waits on the calling thread between attempts, while
+ * {@link #enqueue(Callback)} schedules the next attempt via the
+ * {@link Scheduler}, i.e., no dispatcher thread is blocked while waiting.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class RetryingCall
+  implements Call {
+
+  /** the owning request. */
+  protected Request m_Owner;
+
+  /** the request. */
+  protected okhttp3.Request m_Request;
+
+  /** the policy. */
+  protected RetryPolicy m_Policy;
+
+  /** the current attempt. */
+  protected Call m_Current;
+
+  /** the scheduled attempt. */
+  protected Future<?> m_Timer;
+
+  /** the callback to notify. */
+  protected Callback m_Callback;
+
+  /** the number of attempts so far. */
+  protected int m_Attempts;
+
+  /** the previous wait in msec. */
+  protected long m_Wait;
+
+  /** whether the call has been executed. */
+  protected boolean m_Executed;
+
+  /** whether the call has been cancelled. */
+  protected volatile boolean m_Canceled;
+
+  /**
+   * Initializes the call.
+   *
+   * @param owner	the request that creates the attempts and gets notified of failures
+   * @param request	the request to send
+   * @param policy	the policy to use
+   */
+  public RetryingCall(Request owner, okhttp3.Request request, RetryPolicy policy) {
+    m_Owner   = owner;
+    m_Request = request;
+    m_Policy  = policy;
+  }
+
+  @NotNull
+  @Override
+  public okhttp3.Request request() {
+    return m_Request;
+  }
+
+  /**
+   * Marks the call as executed.
+   */
+  protected synchronized void executed() {
+    if (m_Executed)
+      throw new IllegalStateException("Already executed!");
+    m_Executed = true;
+  }
+
+  /**
+   * Creates the call for the next attempt.
+   *
+   * @return		the call
+   * @throws IOException	if cancelled
+   */
+  protected synchronized Call nextAttempt() throws IOException {
+    m_Timer = null;
+    if (m_Canceled)
+      throw new IOException("Canceled");
+    m_Current = m_Owner.newAttempt(m_Request);
+    m_Attempts++;
+    return m_Current;
+  }
+
+  /**
+   * Determines whether to retry and how long to wait.
+   *
+   * @param t		the exception, null if a response was received
+   * @param response	the response, null if failed
+   * @return		the wait in msec, -1 if not to retry
+   */
+  protected synchronized long nextDelay(Throwable t, Response response) {
+    long	result;
+
+    if (m_Canceled || (m_Attempts >= m_Policy.maxAttempts()))
+      return -1;
+    if ((t != null) && !m_Policy.isRetryable(t))
+      return -1;
+    if ((response != null) && !m_Policy.isRetryable(response.code()))
+      return -1;
+
+    result = m_Policy.delay(m_Wait, response);
+    if ((result < 0) || !m_Policy.acquire())
+      return -1;
+    m_Wait = result;
+
+    return result;
+  }
+
+  /**
+   * Notifies the failure listeners of the request about the failed attempt.
+   *
+   * @param t		the exception, null if a response was received
+   * @param response	the response, null if failed
+   * @param delay	the wait before the next attempt
+   */
+  protected void notifyRetry(Throwable t, Response response, long delay) {
+    if (t == null)
+      t = new IOException("Received status " + response.code() + " for " + m_Request.url()
+	+ ", retrying in " + delay + "ms (attempt " + m_Attempts + "/" + m_Policy.maxAttempts() + ")");
+    m_Owner.notifyFailureListeners(new RequestFailureEvent(m_Owner, t));
+  }
+
+  /**
+   * Waits on the calling thread, unless cancelled.
+   *
+   * @param delay	the wait in msec
+   * @throws IOException	if cancelled or interrupted
+   */
+  protected synchronized void pause(long delay) throws IOException {
+    long	end;
+    long	remaining;
+
+    end = System.currentTimeMillis() + delay;
+    try {
+      while (!m_Canceled && ((remaining = end - System.currentTimeMillis()) > 0))
+	wait(remaining);
+    }
+    catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry: " + m_Request.url());
+    }
+    if (m_Canceled)
+      throw new IOException("Canceled");
+  }
+
+  /**
+   * Executes the attempts, waiting between them on the calling thread.
+   *
+   * @return		the response
+   * @throws IOException	if the last attempt failed or cancelled
+   */
+  @NotNull
+  @Override
+  public Response execute() throws IOException {
+    Response	result;
+    long	delay;
+
+    executed();
+    m_Policy.started();
+
+    while (true) {
+      try {
+	result = nextAttempt().execute();
+      }
+      catch (IOException e) {
+	delay = nextDelay(e, null);
+	if (delay < 0)
+	  throw e;
+	notifyRetry(e, null, delay);
+	pause(delay);
+	continue;
+      }
+
+      delay = nextDelay(null, result);
+      if (delay < 0)
+	return result;
+      result.close();
+      notifyRetry(null, result, delay);
+      pause(delay);
+    }
+  }
+
+  /**
+   * Enqueues the first attempt.
+   *
+   * @param callback	the callback to notify with the outcome
+   */
+  @Override
+  public void enqueue(@NotNull Callback callback) {
+    executed();
+    synchronized (this) {
+      m_Callback = callback;
+    }
+    m_Policy.started();
+    attempt();
+  }
+
+  /**
+   * Enqueues the next attempt.
+   */
+  protected void attempt() {
+    Call	call;
+
+    try {
+      call = nextAttempt();
+    }
+    catch (IOException e) {
+      m_Callback.onFailure(this, e);
+      return;
+    }
+
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	long delay = nextDelay(e, null);
+	if (delay < 0) {
+	  m_Callback.onFailure(RetryingCall.this, e);
+	}
+	else {
+	  notifyRetry(e, null, delay);
+	  retry(delay);
+	}
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+	long delay = nextDelay(null, response);
+	if (delay < 0) {
+	  try {
+	    m_Callback.onResponse(RetryingCall.this, response);
+	  }
+	  catch (IOException e) {
+	    // let the dispatcher report the callback failure
+	    response.close();
+	    throw e;
+	  }
+	}
+	else {
+	  response.close();
+	  notifyRetry(null, response, delay);
+	  retry(delay);
+	}
+      }
+    });
+  }
+
+  /**
+   * Schedules the next attempt.
+   *
+   * @param delay	the wait in msec
+   */
+  protected void retry(long delay) {
+    synchronized (this) {
+      if (!m_Canceled) {
+	m_Timer = Scheduler.schedule(this::attempt, delay);
+	return;
+      }
+    }
+    m_Callback.onFailure(this, new IOException("Canceled"));
+  }
+
+  /**
+   * Cancels the current attempt and any further ones.
+   */
+  @Override
+  public void cancel() {
+    Call	current;
+    boolean	pending;
+
+    synchronized (this) {
+      m_Canceled = true;
+      pending    = (m_Timer != null) && m_Timer.cancel(false);
+      m_Timer    = null;
+      current    = m_Current;
+      notifyAll();
+    }
+    if (current != null)
+      current.cancel();
+    if (pending)
+      m_Callback.onFailure(this, new IOException("Canceled"));
+  }
+
+  @Override
+  public synchronized boolean isExecuted() {
+    return m_Executed;
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return m_Canceled;
+  }
+
+  @NotNull
+  @Override
+  public Timeout timeout() {
+    Call	current;
+
+    synchronized (this) {
+      current = m_Current;
+    }
+    if (current != null)
+      return current.timeout();
+    return Timeout.NONE;
+  }
+
+  @NotNull
+  @Override
+  public Call clone() {
+    return new RetryingCall(m_Owner, m_Request, m_Policy);
+  }
+}
@@ -0,0 +1,425 @@
+/*
+ * SegmentedDownload.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.request;
+
+import com.github.fracpete.requests4j.event.RequestExecutionEvent;
+import com.github.fracpete.requests4j.event.RequestFailureEvent;
+import com.github.fracpete.requests4j.response.BasicResponse;
+import com.github.fracpete.requests4j.response.FileResponse;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okio.BufferedSource;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Downloads a file using multiple concurrent HTTP range requests, writing
+ * the segments into the pre-allocated working file of the response (i.e.,
+ * the ".part" file in atomic mode). Segments get smaller as the download
+ * progresses, so that faster connections pick up more of the work.
+ * Falls back to a single request if the server does not support ranges,
+ * encodes the content (e.g., gzip, the length would not match the decoded
+ * data), answers a range request with the full content (e.g., when ignoring
+ * the Range header or because the file changed and the If-Range validator
+ * no longer matches) or the response is resumable (partial segmented
+ * downloads are not contiguous and cannot be resumed).
+ * <br>
+ * Once complete, the response gets initialized from the first segment's
+ * response, with status 200 and the headers describing the full content.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SegmentedDownload {
+
+  /** the default minimum segment size (1MB). */
+  public final static long DEFAULT_MIN_SEGMENT_SIZE = 1024 * 1024;
+
+  /** the request to use as template. */
+  protected Request m_Request;
+
+  /** the response to fill in. */
+  protected FileResponse m_Response;
+
+  /** the number of concurrent segments. */
+  protected int m_Segments;
+
+  /** the minimum segment size. */
+  protected long m_MinSegmentSize;
+
+  /** the total length of the file. */
+  protected long m_Length;
+
+  /** the offset of the next segment. */
+  protected long m_Offset;
+
+  /** the validator to ensure that the file does not change. */
+  protected String m_Validator;
+
+  /** the channel to write to. */
+  protected FileChannel m_Channel;
+
+  /** the response of the first segment. */
+  protected okhttp3.Response m_First;
+
+  /** whether to fall back to a single request. */
+  protected boolean m_SingleStream;
+
+  /** the calls in progress. */
+  protected Set<Call> m_Calls;
+
+  /** the number of active workers. */
+  protected int m_Active;
+
+  /** gets completed once all segments have been downloaded. */
+  protected CompletableFuture<Void> m_Done;
+
+  /**
+   * Initializes the download.
+   *
+   * @param request	the GET request to use
+   * @param response	the response to fill in
+   * @param segments	the number of concurrent segments
+   */
+  public SegmentedDownload(Request request, FileResponse response, int segments) {
+    if (request.method() != Method.GET)
+      throw new IllegalArgumentException("Only GET requests supported, provided: " + request.method());
+    if (segments < 1)
+      segments = 1;
+    m_Request        = request;
+    m_Response       = response;
+    m_Segments       = segments;
+    m_MinSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+  }
+
+  /**
+   * Sets the minimum segment size.
+   *
+   * @param value	the size in bytes
+   * @return		itself
+   */
+  public SegmentedDownload minSegmentSize(long value) {
+    if (value < 1)
+      value = 1;
+    m_MinSegmentSize = value;
+    return this;
+  }
+
+  /**
+   * Returns the minimum segment size.
+   *
+   * @return		the size in bytes
+   */
+  public long minSegmentSize() {
+    return m_MinSegmentSize;
+  }
+
+  /**
+   * Returns the number of concurrent segments.
+   *
+   * @return		the number of segments
+   */
+  public int segments() {
+    return m_Segments;
+  }
+
+  /**
+   * Executes the download.
+   *
+   * @return		the response
+   * @throws Exception	if download fails
+   */
+  public FileResponse execute() throws Exception {
+    OkHttpClient	client;
+    okhttp3.Request	head;
+    okhttp3.Response	resp;
+    File		working;
+    int			i;
+
+    client = m_Request.client();
+    // no compression, otherwise the length is the compressed one (or missing)
+    head   = m_Request.buildRequest().newBuilder()
+      .head()
+      .header("Accept-Encoding", "identity")
+      .build();
+    try (okhttp3.Response r = client.newCall(head).execute()) {
+      resp = r;
+    }
+    catch (Exception e) {
+      m_Request.notifyFailureListeners(new RequestFailureEvent(m_Request, e));
+      throw e;
+    }
+
+    m_Length = parseLength(resp.header("Content-Length"));
+    if (!resp.isSuccessful()
+      || !"bytes".equalsIgnoreCase(resp.header("Accept-Ranges"))
+      || (m_Segments < 2)
+      || (m_Length < 2 * m_MinSegmentSize)
+      || ((resp.header("Content-Encoding") != null) && !"identity".equalsIgnoreCase(resp.header("Content-Encoding")))
+      || m_Response.resumable())
+      return m_Request.execute(m_Response);
+
+    m_Offset    = 0;
+    m_Validator = resp.header("ETag");
+    if ((m_Validator == null) || m_Validator.startsWith("W/"))
+      m_Validator = resp.header("Last-Modified");
+    m_Calls     = new HashSet<>();
+    m_Done      = new CompletableFuture<>();
+
+    working = m_Response.workingFile();
+    try (RandomAccessFile raf = new RandomAccessFile(working, "rw")) {
+      raf.setLength(m_Length);
+      m_Channel = raf.getChannel();
+      for (i = 0; i < m_Segments; i++) {
+	synchronized (this) {
+	  m_Active++;
+	}
+	nextSegment(client);
+      }
+      m_Done.get();
+      if (singleStream())
+	cancel();
+      else if (m_Response.fsync())
+	m_Channel.force(true);
+    }
+    catch (Exception e) {
+      cancel();
+      if ((e instanceof ExecutionException) && (e.getCause() instanceof Exception))
+	e = (Exception) e.getCause();
+      if (working.exists() && !working.delete())
+	System.err.println("Failed to delete incomplete download: " + working);
+      m_Request.notifyFailureListeners(new RequestFailureEvent(m_Request, e));
+      throw e;
+    }
+    finally {
+      m_Channel = null;
+    }
+
+    if (singleStream()) {
+      if (working.exists() && !working.delete())
+	System.err.println("Failed to delete incomplete download: " + working);
+      return m_Request.execute(m_Response);
+    }
+
+    try {
+      m_Response.complete(m_First.newBuilder()
+	.request(m_First.request().newBuilder().removeHeader("Range").removeHeader("If-Range").build())
+	.code(200)
+	.message("OK")
+	.removeHeader("Content-Range")
+	.header("Content-Length", "" + m_Length)
+	.build());
+    }
+    catch (Exception e) {
+      m_Request.notifyFailureListeners(new RequestFailureEvent(m_Request, e));
+      throw e;
+    }
+
+    m_Request.notifyExecutionListeners(new RequestExecutionEvent(m_Request, m_Response));
+
+    return m_Response;
+  }
+
+  /**
+   * Returns whether to fall back to a single request, as the server
+   * answered a range request with the full content.
+   *
+   * @return		true if to fall back
+   */
+  protected synchronized boolean singleStream() {
+    return m_SingleStream;
+  }
+
+  /**
+   * Parses the content length.
+   *
+   * @param value	the header value, can be null
+   * @return		the length, -1 if not available
+   */
+  protected long parseLength(String value) {
+    if (value == null)
+      return -1;
+    try {
+      return Long.parseLong(value.trim());
+    }
+    catch (Exception e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Checks whether the Content-Range header matches the requested range.
+   *
+   * @param value	the header value, can be null
+   * @param start	the expected start
+   * @param end		the expected end (inclusive)
+   * @return		true if matching
+   */
+  protected boolean matchesRange(String value, long start, long end) {
+    String	expected;
+    String	total;
+
+    if (value == null)
+      return false;
+    value = value.trim();
+    if (!value.startsWith("bytes "))
+      return false;
+    value    = value.substring(6).trim();
+    expected = start + "-" + end + "/";
+    if (!value.startsWith(expected))
+      return false;
+    total = value.substring(expected.length()).trim();
+
+    return total.equals("*") || total.equals("" + m_Length);
+  }
+
+  /**
+   * Determines the next range to download. Segments get smaller the less
+   * data remains, with a lower limit of the minimum segment size.
+   *
+   * @return		the start and end (inclusive) of the range, null if none left
+   */
+  protected synchronized long[] nextRange() {
+    long	size;
+    long	start;
+
+    if (m_Offset >= m_Length)
+      return null;
+    size     = Math.max(m_MinSegmentSize, (m_Length - m_Offset) / (2L * m_Segments));
+    start    = m_Offset;
+    m_Offset = Math.min(m_Length, m_Offset + size);
+
+    return new long[]{start, m_Offset - 1};
+  }
+
+  /**
+   * Requests the next segment or finishes the worker if none left.
+   *
+   * @param client	the client to use
+   */
+  protected void nextSegment(final OkHttpClient client) {
+    final long[]		range;
+    okhttp3.Request.Builder	builder;
+    Call			call;
+
+    if (m_Done.isDone())
+      return;
+
+    range = nextRange();
+    if (range == null) {
+      synchronized (this) {
+	m_Active--;
+	if (m_Active == 0)
+	  m_Done.complete(null);
+      }
+      return;
+    }
+
+    try {
+      // bypass any HTTP cache, which would serve the full response
+      builder = m_Request.buildRequest().newBuilder()
+	.cacheControl(CacheControl.FORCE_NETWORK)
+	.header("Range", "bytes=" + range[0] + "-" + range[1]);
+      if (m_Validator != null)
+	builder.header("If-Range", m_Validator);
+      call = client.newCall(builder.build());
+    }
+    catch (Exception e) {
+      m_Done.completeExceptionally(e);
+      return;
+    }
+
+    synchronized (this) {
+      m_Calls.add(call);
+    }
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(@NotNull Call call, @NotNull IOException e) {
+	m_Done.completeExceptionally(e);
+      }
+
+      @Override
+      public void onResponse(@NotNull Call call, @NotNull okhttp3.Response response) {
+	try (okhttp3.Response r = response) {
+	  // range ignored or If-Range validator no longer matches
+	  if (r.code() == 200) {
+	    synchronized (SegmentedDownload.this) {
+	      m_SingleStream = true;
+	    }
+	    m_Done.complete(null);
+	    return;
+	  }
+	  if (r.code() != 206)
+	    throw new IOException("Expected partial content for range " + range[0] + "-" + range[1] + ", but received: " + r.code() + " " + r.message());
+	  if (!matchesRange(r.header("Content-Range"), range[0], range[1]))
+	    throw new IOException("Content range does not match requested range " + range[0] + "-" + range[1] + "/" + m_Length + ": " + r.header("Content-Range"));
+	  write(r.body().source(), range[0], range[1] - range[0] + 1);
+	  synchronized (SegmentedDownload.this) {
+	    if (m_First == null)
+	      m_First = r;
+	  }
+	}
+	catch (Exception e) {
+	  m_Done.completeExceptionally(e);
+	  return;
+	}
+	finally {
+	  synchronized (SegmentedDownload.this) {
+	    m_Calls.remove(call);
+	  }
+	}
+	nextSegment(client);
+      }
+    });
+  }
+
+  /**
+   * Writes the segment data to the file at the specified position.
+   *
+   * @param source	the data to write
+   * @param position	the position in the file
+   * @param length	the expected number of bytes
+   * @throws IOException	if reading or writing fails
+   */
+  protected void write(BufferedSource source, long position, long length) throws IOException {
+    ByteBuffer	buffer;
+    long	written;
+    int		read;
+
+    buffer  = ByteBuffer.allocate(BasicResponse.CHUNK_SIZE);
+    written = 0;
+    while (written < length) {
+      buffer.clear();
+      if (length - written < buffer.capacity())
+	buffer.limit((int) (length - written));
+      read = source.read(buffer);
+      if (read == -1)
+	throw new IOException("Premature end of segment at " + (position + written) + ", expected end: " + (position + length));
+      buffer.flip();
+      while (buffer.hasRemaining())
+	written += m_Channel.write(buffer, position + written);
+    }
+  }
+
+  /**
+   * Cancels all calls in progress.
+   */
+  protected synchronized void cancel() {
+    for (Call call: m_Calls)
+      call.cancel();
+    m_Calls.clear();
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * AbstractResponse.java
- * Copyright (C) 2019-2020 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2019-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.requests4j.response;
@@ -41,6 +41,17 @@ public class AbstractResponse
     m_Headers       = new HashMap<>();
   }
 
+  /**
+   * Gives the response the chance to adjust the request before it gets sent,
+   * e.g., for adding headers. Default implementation returns the request as is.
+   *
+   * @param request	the request to adjust
+   * @return		the (potentially) adjusted request
+   */
+  public okhttp3.Request prepare(okhttp3.Request request) {
+    return request;
+  }
+
   /**
    * Initializes the response object.
    *
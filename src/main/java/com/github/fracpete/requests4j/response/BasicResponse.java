@@ -1,20 +1,21 @@
 /*
  * BasicResponse.java
- * Copyright (C) 2019-2020 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2019-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.requests4j.response;
 
 import com.github.fracpete.requests4j.request.Request;
-import gnu.trove.list.TByteList;
-import gnu.trove.list.array.TByteArrayList;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * Basic Response class that stores content in memory.
@@ -24,15 +25,24 @@ import java.nio.file.StandardOpenOption;
 public class BasicResponse
   extends AbstractResponse {
 
+  /** the size of the chunks to read. */
+  public final static int CHUNK_SIZE = 64 * 1024;
+
+  /** the maximum size of an array. */
+  public final static int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /** the maximum initial size of the array when the content length is known. */
+  public final static int MAX_INITIAL_SIZE = 1024 * 1024;
+
   /** the body content. */
-  protected TByteList m_Body;
+  protected byte[] m_Body;
 
   /**
    * Initializes the response.
    */
   public BasicResponse() {
     super();
-    m_Body = new TByteArrayList();
+    m_Body = new byte[0];
   }
 
   /**
@@ -42,18 +52,13 @@ public class BasicResponse
    */
   @Override
   public void init(okhttp3.Response response) {
-    InputStream	in;
-    int		b;
-
     super.init(response);
 
     if (!Request.isRedirect(response.code())) {
-      m_Body.clear();
+      m_Body = new byte[0];
       if (response.body() != null) {
         try {
-          in = response.body().byteStream();
-          while ((b = in.read()) != -1)
-            m_Body.add((byte) b);
+          m_Body = readBody(response.body().byteStream(), response.body().contentLength());
         }
         catch (Exception e) {
           System.err.println("Failed to read response body!");
@@ -63,12 +68,95 @@ public class BasicResponse
   }
 
   /**
-   * Returns the body.
+   * Reads the stream in chunks into a single array. Pre-sizes the array
+   * if the content length is known, but at most to {@link #MAX_INITIAL_SIZE},
+   * since the header cannot be trusted. The array grows as data arrives.
+   *
+   * @param in			the stream to read
+   * @param contentLength	the content length, -1 if unknown
+   * @return			the data
+   * @throws IOException	if reading fails
+   */
+  protected static byte[] readBody(InputStream in, long contentLength) throws IOException {
+    byte[]	result;
+    int		length;
+    int		read;
+    long	size;
+
+    if (contentLength >= 0)
+      result = new byte[(int) Math.min(contentLength, MAX_INITIAL_SIZE)];
+    else
+      result = new byte[CHUNK_SIZE];
+    length = 0;
+
+    while (true) {
+      if (length == result.length) {
+        // content length matched? check for EOF before growing
+        if (length == contentLength) {
+          read = in.read();
+          if (read == -1)
+            break;
+        }
+        else {
+          read = -2;
+        }
+        if (result.length == MAX_ARRAY_SIZE)
+          throw new IOException("Response body too large for memory!");
+        size = Math.max((long) result.length * 2, CHUNK_SIZE);
+        // don't grow beyond the announced length
+        if (contentLength > length)
+          size = Math.min(size, contentLength);
+        result = Arrays.copyOf(result, (int) Math.min(MAX_ARRAY_SIZE, size));
+        if (read >= 0)
+          result[length++] = (byte) read;
+      }
+      read = in.read(result, length, Math.min(result.length - length, CHUNK_SIZE));
+      if (read == -1)
+        break;
+      length += read;
+    }
+
+    if (length < result.length)
+      result = Arrays.copyOf(result, length);
+
+    return result;
+  }
+
+  /**
+   * Returns a copy of the body. Use {@link #bodyBuffer()} or
+   * {@link #bodyStream()} for read-only access without copying.
    *
    * @return		the body
    */
   public byte[] body() {
-    return m_Body.toArray();
+    return m_Body.clone();
+  }
+
+  /**
+   * Returns the length of the body.
+   *
+   * @return		the number of bytes
+   */
+  public int bodyLength() {
+    return m_Body.length;
+  }
+
+  /**
+   * Returns a read-only view of the body, without copying it.
+   *
+   * @return		the buffer
+   */
+  public ByteBuffer bodyBuffer() {
+    return ByteBuffer.wrap(m_Body).asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a stream over the body, without copying it.
+   *
+   * @return		the stream
+   */
+  public InputStream bodyStream() {
+    return new ByteArrayInputStream(m_Body);
   }
 
   /**
@@ -87,7 +175,7 @@ public class BasicResponse
    * @return		the text
    */
   public String text(String encoding) throws UnsupportedEncodingException {
-    return new String(body(), encoding);
+    return new String(m_Body, encoding);
   }
 
   /**
@@ -107,7 +195,7 @@ public class BasicResponse
    * @throws IOException	if writing fails
    */
   public void saveBody(File file) throws IOException {
-    Files.write(file.toPath(), body(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    Files.write(file.toPath(), m_Body, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
   }
 
   /**
@@ -117,6 +205,6 @@ public class BasicResponse
    */
   @Override
   public String toString() {
-    return super.toString() + ", body length: " + body().length;
+    return super.toString() + ", body length: " + bodyLength();
   }
 }
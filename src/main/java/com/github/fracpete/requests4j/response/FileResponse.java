@@ -1,16 +1,25 @@
 /*
  * FileResponse.java
- * Copyright (C) 2019-2024 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2019-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.requests4j.response;
 
 import com.github.fracpete.requests4j.request.Request;
+import okio.BufferedSource;
 import org.apache.commons.io.IOUtils;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Streams the data directly to a file. Useful for large downloads.
@@ -20,12 +29,30 @@ import java.io.FileOutputStream;
 public class FileResponse
   extends AbstractResponse {
 
+  /** the maximum number of bytes to transfer per channel call. */
+  public final static long TRANSFER_SIZE = 1024 * 1024;
+
   /** the file to write to. */
   protected File m_OutputFile;
 
   /** the buffer size (<= 0 for default). */
   protected int m_BufferSize;
 
+  /** whether to resume partial downloads. */
+  protected boolean m_Resumable;
+
+  /** whether the last response got appended to a partial download. */
+  protected boolean m_Resumed;
+
+  /** whether to write via a file channel. */
+  protected boolean m_Channel;
+
+  /** whether to write to a temporary file first. */
+  protected boolean m_Atomic;
+
+  /** whether to sync the data to the storage device. */
+  protected boolean m_Fsync;
+
   /**
    * Initializes the response.
    *
@@ -65,37 +92,413 @@ public class FileResponse
       bufferSize = -1;
     m_OutputFile = outputFile;
     m_BufferSize = bufferSize;
+    m_Resumable  = false;
+    m_Resumed    = false;
+    m_Channel    = false;
+    m_Atomic     = false;
+    m_Fsync      = false;
+  }
+
+  /**
+   * Sets whether to write the data via a {@link FileChannel}, transferring
+   * it directly from the response source. The file gets pre-allocated if
+   * the content length is known. The buffer size is ignored in this mode.
+   *
+   * @param value	true if to use a channel
+   * @return		itself
+   */
+  public FileResponse channel(boolean value) {
+    m_Channel = value;
+    return this;
+  }
+
+  /**
+   * Returns whether the data gets written via a file channel.
+   *
+   * @return		true if channel used
+   */
+  public boolean channel() {
+    return m_Channel;
+  }
+
+  /**
+   * Sets whether to write the data to a temporary file first, which gets
+   * renamed to the output file once all data has been received. Hence, a
+   * partially written file never appears under the output file's name.
+   *
+   * @param value	true if to write atomically
+   * @return		itself
+   * @see		#workingFile()
+   */
+  public FileResponse atomic(boolean value) {
+    m_Atomic = value;
+    return this;
+  }
+
+  /**
+   * Returns whether the data gets written to a temporary file first.
+   *
+   * @return		true if atomic
+   */
+  public boolean atomic() {
+    return m_Atomic;
+  }
+
+  /**
+   * Sets whether to force the data to the storage device before closing
+   * the file.
+   *
+   * @param value	true if to sync
+   * @return		itself
+   */
+  public FileResponse fsync(boolean value) {
+    m_Fsync = value;
+    return this;
+  }
+
+  /**
+   * Returns whether the data gets forced to the storage device.
+   *
+   * @return		true if synced
+   */
+  public boolean fsync() {
+    return m_Fsync;
+  }
+
+  /**
+   * Returns the file that the data gets written to while downloading.
+   * Either the output file or, in atomic mode, a ".part" file next to it.
+   *
+   * @return		the file
+   */
+  public File workingFile() {
+    if (m_Atomic)
+      return new File(m_OutputFile.getPath() + ".part");
+    else
+      return m_OutputFile;
+  }
+
+  /**
+   * Sets whether to resume partial downloads. In that case, the validator
+   * (ETag or Last-Modified) of the response gets stored in a sidecar file
+   * while downloading. If a partial download and its sidecar file are
+   * present, only the remaining bytes get requested (if the remote file
+   * is unchanged).
+   *
+   * @param value	true if resumable
+   * @return		itself
+   * @see		#sidecarFile()
+   */
+  public FileResponse resumable(boolean value) {
+    m_Resumable = value;
+    return this;
+  }
+
+  /**
+   * Returns whether partial downloads get resumed.
+   *
+   * @return		true if resumable
+   */
+  public boolean resumable() {
+    return m_Resumable;
+  }
+
+  /**
+   * Returns whether the last response got appended to a partial download.
+   *
+   * @return		true if resumed
+   */
+  public boolean resumed() {
+    return m_Resumed;
+  }
+
+  /**
+   * Returns the file that stores the validator of a partial download.
+   *
+   * @return		the sidecar file
+   */
+  public File sidecarFile() {
+    return new File(m_OutputFile.getPath() + ".resume");
+  }
+
+  /**
+   * Reads the validator of a partial download from the sidecar file.
+   *
+   * @return		the validator, null if not available
+   */
+  protected String readValidator() {
+    File	sidecar;
+
+    sidecar = sidecarFile();
+    if (!sidecar.exists())
+      return null;
+    try {
+      return new String(Files.readAllBytes(sidecar.toPath()), StandardCharsets.UTF_8).trim();
+    }
+    catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the validator of the response (strong ETag or Last-Modified).
+   *
+   * @param response	the response to get the validator from
+   * @return		the validator, null if not available
+   */
+  protected String validator(okhttp3.Response response) {
+    String	result;
+
+    result = response.header("ETag");
+    if ((result == null) || result.startsWith("W/"))
+      result = response.header("Last-Modified");
+
+    return result;
+  }
+
+  /**
+   * Adds the range headers if a partial download can be resumed.
+   *
+   * @param request	the request to adjust
+   * @return		the (potentially) adjusted request
+   */
+  @Override
+  public okhttp3.Request prepare(okhttp3.Request request) {
+    String	validator;
+
+    if (!m_Resumable || (workingFile().length() == 0))
+      return request;
+    validator = readValidator();
+    if ((validator == null) || validator.isEmpty())
+      return request;
+
+    return request.newBuilder()
+      .header("Range", "bytes=" + workingFile().length() + "-")
+      .header("If-Range", validator)
+      .build();
+  }
+
+  /**
+   * Parses the start position and total length from the Content-Range header.
+   *
+   * @param response	the response to get the header from
+   * @return		start and total length (-1 if not available)
+   */
+  protected long[] contentRange(okhttp3.Response response) {
+    long[]	result;
+    String	range;
+    String	start;
+    String	total;
+
+    result = new long[]{-1, -1};
+    range  = response.header("Content-Range");
+    if ((range == null) || !range.startsWith("bytes ") || !range.contains("/"))
+      return result;
+    range = range.substring(6).trim();
+    total = range.substring(range.indexOf('/') + 1).trim();
+    start = range.substring(0, range.indexOf('/'));
+    try {
+      if (!start.startsWith("*"))
+	result[0] = Long.parseLong(start.substring(0, start.indexOf('-')).trim());
+      if (!total.equals("*"))
+	result[1] = Long.parseLong(total);
+    }
+    catch (Exception e) {
+      // ignored
+    }
+
+    return result;
   }
 
   /**
    * Initializes the response object.
+   * Does not write anything for HEAD requests.
    *
    * @param response		the response
+   * @throws UncheckedIOException	if writing the data fails or, in resumable mode, if the server reported an error
    */
   @Override
   public void init(okhttp3.Response response) {
+    File		working;
+    long[]		range;
+    boolean		append;
+    String		validator;
+
+    super.init(response);
+    m_Resumed = false;
+
+    if (Request.isRedirect(response.code()) || response.request().method().equals("HEAD"))
+      return;
+
+    working = workingFile();
+    append  = false;
+    if (m_Resumable) {
+      // don't touch partial download
+      if (!response.isSuccessful() && (response.code() != 416))
+	throw new UncheckedIOException(new IOException(
+	  "Failed to download " + response.request().url() + ": " + response.code() + " " + response.message()));
+      range = contentRange(response);
+      if (response.code() == 416) {
+	if ((range[1] != -1) && (range[1] == working.length())) {
+	  // already complete
+	  finish(working);
+	  return;
+	}
+	throw new UncheckedIOException(new IOException(
+	  "Failed to resume download of " + response.request().url() + ": " + response.code() + " " + response.message()));
+      }
+      if (response.code() == 206) {
+	if (range[0] != working.length())
+	  throw new UncheckedIOException(new IOException(
+	    "Content range of " + response.request().url() + " does not continue partial download "
+	      + working + ": " + response.header("Content-Range")));
+	append = true;
+      }
+      else {
+	try {
+	  validator = validator(response);
+	  if (validator == null)
+	    Files.deleteIfExists(sidecarFile().toPath());
+	  else
+	    Files.write(sidecarFile().toPath(), validator.getBytes(StandardCharsets.UTF_8));
+	}
+	catch (IOException e) {
+	  throw new UncheckedIOException("Failed to write sidecar file: " + sidecarFile(), e);
+	}
+      }
+    }
+
+    try {
+      if (m_Channel)
+	writeChannel(response, working, append);
+      else
+	writeStream(response, working, append);
+      m_Resumed = append;
+    }
+    catch (IOException e) {
+      // keep partial download for resuming
+      if (m_Atomic && !m_Resumable)
+	working.delete();
+      throw new UncheckedIOException("Failed to write response to " + working + "!", e);
+    }
+
+    finish(working);
+  }
+
+  /**
+   * Initializes the response with status and headers only, for data that
+   * has already been written to the working file by other means (e.g., by
+   * a segmented download), and finishes the download, i.e., renames the
+   * working file in atomic mode.
+   *
+   * @param response		the response to get status and headers from
+   * @throws UncheckedIOException	if renaming fails
+   * @see			#workingFile()
+   */
+  public void complete(okhttp3.Response response) {
+    super.init(response);
+    m_Resumed = false;
+    finish(workingFile());
+  }
+
+  /**
+   * Writes the response body using a buffered stream.
+   *
+   * @param response	the response to write
+   * @param file	the file to write to
+   * @param append	whether to append to the file
+   * @throws IOException	if writing fails
+   */
+  protected void writeStream(okhttp3.Response response, File file, boolean append) throws IOException {
     FileOutputStream 		fos;
     BufferedOutputStream 	bos;
 
-    super.init(response);
+    fos = null;
+    bos = null;
+    try {
+      fos = new FileOutputStream(file.getAbsolutePath(), append);
+      if (m_BufferSize <= 0)
+	bos = new BufferedOutputStream(fos);
+      else
+	bos = new BufferedOutputStream(fos, m_BufferSize);
+      IOUtils.copy(response.body().byteStream(), bos);
+      bos.flush();
+      if (m_Fsync)
+	fos.getFD().sync();
+    }
+    finally {
+      IOUtils.closeQuietly(bos);
+      IOUtils.closeQuietly(fos);
+    }
+  }
+
+  /**
+   * Writes the response body via a file channel, transferring the data
+   * directly from the response source. Pre-allocates the file if the
+   * content length is known. On failure, the file gets truncated to
+   * the data actually written.
+   *
+   * @param response	the response to write
+   * @param file	the file to write to
+   * @param append	whether to append to the file
+   * @throws IOException	if writing fails
+   */
+  protected void writeChannel(okhttp3.Response response, File file, boolean append) throws IOException {
+    BufferedSource	source;
+    FileChannel		channel;
+    long		length;
+    long		position;
+    long		transferred;
+    boolean		success;
 
-    if (!Request.isRedirect(response.code())) {
-      fos = null;
-      bos = null;
+    source  = response.body().source();
+    length  = response.body().contentLength();
+    success = false;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      channel  = raf.getChannel();
+      position = append ? channel.size() : 0;
       try {
-        fos = new FileOutputStream(m_OutputFile.getAbsolutePath());
-        if (m_BufferSize <= 0)
-          bos = new BufferedOutputStream(fos);
-        else
-          bos = new BufferedOutputStream(fos, m_BufferSize);
-        IOUtils.copy(response.body().byteStream(), bos);
-      }
-      catch (Exception e) {
-        // TODO error message?
+	if (length > 0)
+	  raf.setLength(position + length);
+	else if (!append)
+	  channel.truncate(0);
+	while ((transferred = channel.transferFrom(source, position, TRANSFER_SIZE)) > 0)
+	  position += transferred;
+	if (!source.exhausted())
+	  throw new IOException("Failed to transfer all data, stopped at position " + position);
+	success = true;
       }
       finally {
-        IOUtils.closeQuietly(bos);
-        IOUtils.closeQuietly(fos);
+	if (channel.size() != position)
+	  channel.truncate(position);
+	if (success && m_Fsync)
+	  channel.force(true);
+      }
+    }
+  }
+
+  /**
+   * Finishes the download: removes the sidecar file (resumable mode) and
+   * renames the working file to the output file (atomic mode).
+   *
+   * @param working	the working file
+   * @throws UncheckedIOException	if renaming fails
+   */
+  protected void finish(File working) {
+    if (m_Resumable)
+      sidecarFile().delete();
+
+    if (!working.equals(m_OutputFile)) {
+      try {
+	try {
+	  Files.move(working.toPath(), m_OutputFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	catch (AtomicMoveNotSupportedException e) {
+	  Files.move(working.toPath(), m_OutputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+      }
+      catch (IOException e) {
+	throw new UncheckedIOException("Failed to rename " + working + " to " + m_OutputFile + "!", e);
       }
     }
   }
@@ -127,6 +530,10 @@ public class FileResponse
   public String toString() {
     return super.toString()
       + ", outputFile=" + outputFile()
-      + ", bufferSize=" + (bufferSize() <= 0 ? "-default-" : "" + bufferSize());
+      + ", bufferSize=" + (bufferSize() <= 0 ? "-default-" : "" + bufferSize())
+      + ", resumable=" + resumable()
+      + ", channel=" + channel()
+      + ", atomic=" + atomic()
+      + ", fsync=" + fsync();
   }
 }
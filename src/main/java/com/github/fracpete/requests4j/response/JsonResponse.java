@@ -1,56 +1,104 @@
 /*
  * JsonResponse.java
- * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ * Copyright (C) 2021-2026 University of Waikato, Hamilton, New Zealand
  */
 
 package com.github.fracpete.requests4j.response;
 
-import com.github.fracpete.requests4j.json.Array;
-import com.github.fracpete.requests4j.json.Dictionary;
+import com.github.fracpete.requests4j.json.JsonCodec;
+import com.github.fracpete.requests4j.json.JsonPath;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 
 /**
  * For parsing the response as Json data structure.
+ * The body gets parsed directly from the buffered bytes, at most once.
+ * All methods return the same (cached) Json tree. Objects can be bound
+ * directly from the bytes (without a tree) via {@link #as(Class)}.
  *
  * @author fracpete (fracpete at waikato dot ac dot nz)
  */
 public class JsonResponse
   extends BasicResponse {
 
+  /** the maximum number of characters of the body to include in error messages. */
+  public final static int MAX_ERROR_LENGTH = 100;
+
+  /** the parsed json. */
+  protected JsonElement m_Json;
+
+  /** the error from parsing the json. */
+  protected RuntimeException m_JsonError;
+
   /**
-   * Checks whether the response is json (array or object).
+   * Initializes the response object.
    *
-   * @return true if json
+   * @param response		the response
    */
-  public boolean isJson() {
+  @Override
+  public void init(okhttp3.Response response) {
+    m_Json      = null;
+    m_JsonError = null;
+    super.init(response);
+  }
+
+  /**
+   * Parses the body, if not already done so.
+   */
+  protected synchronized void parse() {
+    JsonElement	json;
+    String	text;
+
+    if ((m_Json != null) || (m_JsonError != null))
+      return;
+
     try {
-      json();
-      return true;
+      json = JsonParser.parseReader(new InputStreamReader(bodyStream(), StandardCharsets.UTF_8));
+      if (json.isJsonObject() || json.isJsonArray()) {
+	m_Json = json;
+      }
+      else {
+	text = new String(m_Body, 0, Math.min(m_Body.length, MAX_ERROR_LENGTH), StandardCharsets.UTF_8);
+	m_JsonError = new IllegalStateException("Neither array nor object: " + text);
+      }
     }
-    catch (Exception e) {
-      return false;
+    catch (RuntimeException e) {
+      m_JsonError = e;
     }
   }
 
+  /**
+   * Checks whether the response is json (array or object).
+   *
+   * @return true if json
+   */
+  public boolean isJson() {
+    parse();
+    return (m_Json != null);
+  }
+
   /**
    * Returns the body as json element (either array or object).
    *
    * @return		the element
    */
   public JsonElement json() throws UnsupportedEncodingException {
-    String  	json;
-
-    json = text("UTF-8").trim();
-    if (json.startsWith("{"))
-      return Dictionary.parse(json).toJson();
-    else if (json.startsWith("["))
-      return Array.parse(json).toJson();
-    else
-      throw new IllegalStateException("Neither array nor object: " + json);
+    parse();
+    if (m_JsonError != null)
+      throw m_JsonError;
+    return m_Json;
   }
 
   /**
@@ -59,7 +107,12 @@ public class JsonResponse
    * @return		the object
    */
   public JsonObject jsonObject() throws UnsupportedEncodingException {
-    return Dictionary.parse(text("UTF-8")).toJson();
+    JsonElement	json;
+
+    json = json();
+    if (!json.isJsonObject())
+      throw new IllegalStateException("Not an object!");
+    return json.getAsJsonObject();
   }
 
   /**
@@ -68,6 +121,74 @@ public class JsonResponse
    * @return		the object
    */
   public JsonArray jsonArray() throws UnsupportedEncodingException {
-    return Array.parse(text("UTF-8")).toJson();
+    JsonElement	json;
+
+    json = json();
+    if (!json.isJsonArray())
+      throw new IllegalStateException("Not an array!");
+    return json.getAsJsonArray();
+  }
+
+  /**
+   * Binds the body to an object of the specified class, using the cached
+   * type adapters of {@link JsonCodec}. Unless the Json tree has already been
+   * parsed, the object gets bound directly from the bytes.
+   *
+   * @param cls		the class of the object
+   * @return		the object
+   * @throws IOException	if reading or binding fails
+   */
+  public <T> T as(Class<T> cls) throws IOException {
+    return as((Type) cls);
+  }
+
+  /**
+   * Binds the body to an object of the specified type (e.g., generic
+   * collections), using the cached type adapters of {@link JsonCodec}.
+   * Unless the Json tree has already been parsed, the object gets bound
+   * directly from the bytes.
+   *
+   * @param type	the type of the object
+   * @return		the object
+   * @throws IOException	if reading or binding fails
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T as(Type type) throws IOException {
+    TypeAdapter<?>	adapter;
+    JsonReader		reader;
+    JsonElement		json;
+
+    adapter = JsonCodec.adapter(type);
+    synchronized (this) {
+      json = m_Json;
+    }
+    // the caller determines the type of the result
+    if (json != null)
+      return (T) adapter.fromJsonTree(json);
+
+    reader = JsonCodec.compact().newJsonReader(new InputStreamReader(bodyStream(), StandardCharsets.UTF_8));
+    return (T) adapter.read(reader);
+  }
+
+  /**
+   * Selects the values matching the path expressions, e.g., "$.items[*].id".
+   * Unless the Json tree has already been parsed, the body gets read in a
+   * single streaming pass, only materializing the matching values.
+   *
+   * @param paths	the path expressions
+   * @return		the matching values per path (in order of the paths)
+   * @throws IOException	if reading fails
+   * @see		JsonPath
+   */
+  public Map<String,List<JsonElement>> select(String... paths) throws IOException {
+    JsonElement		json;
+
+    synchronized (this) {
+      json = m_Json;
+    }
+    if (json != null)
+      return JsonPath.select(json, paths);
+
+    return JsonPath.select(JsonCodec.compact().newJsonReader(new InputStreamReader(bodyStream(), StandardCharsets.UTF_8)), paths);
   }
 }
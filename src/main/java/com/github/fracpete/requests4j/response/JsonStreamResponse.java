@@ -0,0 +1,238 @@
+/*
+ * JsonStreamResponse.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.response;
+
+import com.github.fracpete.requests4j.json.Dictionary;
+import com.github.fracpete.requests4j.json.JsonPath;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses the objects of a Json array incrementally from the connection,
+ * i.e., only one element is held in memory at a time. The array can either
+ * be the top-level element or be selected via a JSON pointer (RFC 6901),
+ * e.g., "/data/items". The connection gets closed once all elements have
+ * been read or when closing the response or stream.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class JsonStreamResponse
+  extends LazyResponse
+  implements Iterable<Dictionary> {
+
+  /** the JSON pointer to the array. */
+  protected String m_Pointer;
+
+  /** the reader in use. */
+  protected JsonReader m_Reader;
+
+  /**
+   * Initializes the response for a top-level array.
+   */
+  public JsonStreamResponse() {
+    this("");
+  }
+
+  /**
+   * Initializes the response.
+   *
+   * @param pointer	the JSON pointer to the array, empty string for top-level array
+   */
+  public JsonStreamResponse(String pointer) {
+    super();
+    if (pointer == null)
+      pointer = "";
+    if (!pointer.isEmpty() && !pointer.startsWith("/"))
+      throw new IllegalArgumentException("JSON pointer must start with '/': " + pointer);
+    m_Pointer = pointer;
+  }
+
+  /**
+   * Returns the JSON pointer to the array.
+   *
+   * @return		the pointer, empty string for top-level array
+   */
+  public String pointer() {
+    return m_Pointer;
+  }
+
+  /**
+   * Initializes the response object.
+   *
+   * @param response		the response
+   */
+  @Override
+  public void init(okhttp3.Response response) {
+    m_Reader = null;
+    super.init(response);
+  }
+
+  /**
+   * Returns a reader over the body.
+   *
+   * @return		the reader
+   * @throws IllegalStateException	if the body is already being read
+   */
+  protected synchronized JsonReader reader() {
+    if (m_Reader != null)
+      throw new IllegalStateException("Body is already being read!");
+    m_Reader = new JsonReader(new InputStreamReader(bodyStream(), StandardCharsets.UTF_8));
+    return m_Reader;
+  }
+
+  /**
+   * Moves the reader to the value the pointer refers to.
+   *
+   * @param reader	the reader to use
+   * @param pointer	the JSON pointer
+   * @throws IOException	if reading fails or pointer cannot be resolved
+   */
+  protected static void navigate(JsonReader reader, String pointer) throws IOException {
+    String[]	tokens;
+    String	token;
+    int		i;
+    int		n;
+    int		index;
+    boolean	found;
+
+    if (pointer.isEmpty())
+      return;
+
+    tokens = pointer.substring(1).split("/", -1);
+    for (i = 0; i < tokens.length; i++) {
+      token = tokens[i].replace("~1", "/").replace("~0", "~");
+      found = false;
+      if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+	reader.beginObject();
+	while (reader.hasNext()) {
+	  if (reader.nextName().equals(token)) {
+	    found = true;
+	    break;
+	  }
+	  reader.skipValue();
+	}
+      }
+      else if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+	try {
+	  index = Integer.parseInt(token);
+	}
+	catch (NumberFormatException e) {
+	  throw new IOException("Invalid array index '" + token + "' in JSON pointer: " + pointer);
+	}
+	reader.beginArray();
+	for (n = 0; n < index && reader.hasNext(); n++)
+	  reader.skipValue();
+	found = reader.hasNext();
+      }
+      if (!found)
+	throw new IOException("Failed to resolve '" + token + "' of JSON pointer: " + pointer);
+    }
+  }
+
+  /**
+   * Returns an iterator over the objects of the array.
+   * Can only be called once per response.
+   *
+   * @return		the iterator
+   * @throws UncheckedIOException	if locating the array fails
+   */
+  @Override
+  public Iterator<Dictionary> iterator() {
+    final JsonReader	reader;
+
+    reader = reader();
+    try {
+      navigate(reader, m_Pointer);
+      reader.beginArray();
+    }
+    catch (IOException e) {
+      close();
+      throw new UncheckedIOException("Failed to locate array: " + (m_Pointer.isEmpty() ? "/" : m_Pointer), e);
+    }
+
+    return new Iterator<Dictionary>() {
+      /** whether the end of the array has been reached. */
+      protected boolean m_Finished;
+
+      @Override
+      public boolean hasNext() {
+	if (m_Finished)
+	  return false;
+	try {
+	  if (reader.hasNext())
+	    return true;
+	  reader.endArray();
+	}
+	catch (IOException e) {
+	  close();
+	  throw new UncheckedIOException("Failed to read array!", e);
+	}
+	m_Finished = true;
+	close();
+	return false;
+      }
+
+      @Override
+      public Dictionary next() {
+	JsonElement	element;
+
+	if (!hasNext())
+	  throw new NoSuchElementException();
+	element = JsonParser.parseReader(reader);
+	if (!element.isJsonObject())
+	  throw new IllegalStateException("Array element is not an object: " + element);
+	return new Dictionary(element.getAsJsonObject());
+      }
+    };
+  }
+
+  /**
+   * Selects the values matching the path expressions (relative to the root
+   * of the document, not the pointer), e.g., "$.items[*].id". The body gets
+   * read from the connection in a single pass, only materializing the
+   * matching values. Closes the response afterwards. Can only be called
+   * once per response, instead of iterating.
+   *
+   * @param paths	the path expressions
+   * @return		the matching values per path (in order of the paths)
+   * @throws IOException	if reading fails
+   * @see		JsonPath
+   */
+  public Map<String,List<JsonElement>> select(String... paths) throws IOException {
+    try {
+      return JsonPath.select(reader(), paths);
+    }
+    finally {
+      close();
+    }
+  }
+
+  /**
+   * Returns a stream over the objects of the array. Closing the stream
+   * closes the response. Can only be called once per response.
+   *
+   * @return		the stream
+   */
+  public Stream<Dictionary> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(this::close);
+  }
+}
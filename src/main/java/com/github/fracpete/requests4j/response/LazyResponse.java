@@ -0,0 +1,164 @@
+/*
+ * LazyResponse.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.response;
+
+import com.github.fracpete.requests4j.request.Request;
+import okio.BufferedSource;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Response that does not consume the body when the request gets executed.
+ * Instead, the connection is kept open and the body can be read
+ * incrementally via {@link #bodyStream()} or {@link #bodySource()}.
+ * <br>
+ * The response must be closed once finished, to release the connection.
+ * Responses that become unreachable without having been closed get
+ * closed automatically and are reported as leaked.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class LazyResponse
+  extends AbstractResponse
+  implements Closeable {
+
+  /** for releasing responses that were never closed. */
+  protected final static Cleaner CLEANER = Cleaner.create();
+
+  /** the number of responses that were not closed. */
+  protected final static AtomicInteger LEAKED = new AtomicInteger();
+
+  /**
+   * Keeps track of the raw response, without referencing the outer object.
+   */
+  protected static class State
+    implements Runnable {
+
+    /** the raw response to close. */
+    protected okhttp3.Response m_Response;
+
+    /** whether getting closed explicitly. */
+    protected volatile boolean m_Explicit;
+
+    /**
+     * Initializes the state.
+     *
+     * @param response	the raw response
+     */
+    public State(okhttp3.Response response) {
+      m_Response = response;
+      m_Explicit = false;
+    }
+
+    /**
+     * Closes the raw response.
+     */
+    @Override
+    public void run() {
+      if (!m_Explicit) {
+	LEAKED.incrementAndGet();
+	System.err.println("LazyResponse was not closed: " + m_Response.request().url());
+      }
+      try {
+	m_Response.close();
+      }
+      catch (Exception e) {
+	// ignored
+      }
+    }
+  }
+
+  /** the state of the current raw response. */
+  protected State m_State;
+
+  /** for cleaning up the current raw response. */
+  protected Cleaner.Cleanable m_Cleanable;
+
+  /**
+   * Initializes the response object. Keeps the body open.
+   *
+   * @param response		the response
+   */
+  @Override
+  public void init(okhttp3.Response response) {
+    close();
+    super.init(response);
+
+    if (!Request.isRedirect(response.code())) {
+      m_State     = new State(response);
+      m_Cleanable = CLEANER.register(this, m_State);
+    }
+  }
+
+  /**
+   * Returns whether the body is still available.
+   *
+   * @return		true if available
+   */
+  public boolean isOpen() {
+    return (m_State != null);
+  }
+
+  /**
+   * Returns the body as stream.
+   *
+   * @return		the stream
+   * @throws IllegalStateException	if already closed or no body available
+   */
+  public InputStream bodyStream() {
+    return bodySource().inputStream();
+  }
+
+  /**
+   * Returns the body as okio source.
+   *
+   * @return		the source
+   * @throws IllegalStateException	if already closed or no body available
+   */
+  public BufferedSource bodySource() {
+    if (!isOpen())
+      throw new IllegalStateException("Response has been closed!");
+    if (m_RawResponse.body() == null)
+      throw new IllegalStateException("Response has no body!");
+    return m_RawResponse.body().source();
+  }
+
+  /**
+   * Closes the response and releases the connection.
+   */
+  @Override
+  public void close() {
+    if (m_State != null) {
+      m_State.m_Explicit = true;
+      m_Cleanable.clean();
+      m_State     = null;
+      m_Cleanable = null;
+    }
+  }
+
+  /**
+   * Returns the number of responses that were garbage collected without
+   * having been closed.
+   *
+   * @return		the number of leaked responses
+   */
+  public static int leaked() {
+    return LEAKED.get();
+  }
+
+  /**
+   * Outputs a short description of the response.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return super.toString() + ", open: " + isOpen();
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * NdJsonResponse.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.response;
+
+import com.github.fracpete.requests4j.json.Dictionary;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses newline-delimited Json (NDJSON, JSON Lines) records as they
+ * arrive from the connection. Only a single line is buffered at a time,
+ * up to the maximum line length. Empty lines get skipped. The connection
+ * gets closed once all records have been read or when closing the
+ * response or stream.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class NdJsonResponse
+  extends LazyResponse
+  implements Iterable<Dictionary> {
+
+  /** the default maximum line length (1MB). */
+  public final static int DEFAULT_MAX_LINE_LENGTH = 1024 * 1024;
+
+  /** the maximum line length in bytes. */
+  protected int m_MaxLineLength;
+
+  /** whether the body is being read. */
+  protected boolean m_Reading;
+
+  /**
+   * Initializes the response with the default maximum line length.
+   */
+  public NdJsonResponse() {
+    this(DEFAULT_MAX_LINE_LENGTH);
+  }
+
+  /**
+   * Initializes the response.
+   *
+   * @param maxLineLength	the maximum line length in bytes
+   */
+  public NdJsonResponse(int maxLineLength) {
+    super();
+    if (maxLineLength < 1)
+      maxLineLength = DEFAULT_MAX_LINE_LENGTH;
+    m_MaxLineLength = maxLineLength;
+  }
+
+  /**
+   * Returns the maximum line length.
+   *
+   * @return		the length in bytes
+   */
+  public int maxLineLength() {
+    return m_MaxLineLength;
+  }
+
+  /**
+   * Initializes the response object.
+   *
+   * @param response		the response
+   */
+  @Override
+  public void init(okhttp3.Response response) {
+    m_Reading = false;
+    super.init(response);
+  }
+
+  /**
+   * Reads the next line.
+   *
+   * @param source	the source to read from
+   * @return		the line, null if no more data
+   * @throws IOException	if reading fails or line too long
+   */
+  protected String readLine(BufferedSource source) throws IOException {
+    long	index;
+
+    if (source.exhausted())
+      return null;
+    index = source.indexOf((byte) '\n', 0, m_MaxLineLength + 1L);
+    if (index != -1)
+      return source.readUtf8LineStrict();
+    if (source.getBuffer().size() > m_MaxLineLength)
+      throw new IOException("Line exceeds maximum length of " + m_MaxLineLength + " bytes!");
+    // last line without newline
+    return source.readUtf8();
+  }
+
+  /**
+   * Returns an iterator over the records.
+   * Can only be called once per response.
+   *
+   * @return		the iterator
+   */
+  @Override
+  public Iterator<Dictionary> iterator() {
+    final BufferedSource	source;
+
+    synchronized (this) {
+      if (m_Reading)
+	throw new IllegalStateException("Body is already being read!");
+      m_Reading = true;
+    }
+    source = bodySource();
+
+    return new Iterator<Dictionary>() {
+      /** the next line. */
+      protected String m_Next;
+
+      /** whether all records have been read. */
+      protected boolean m_Finished;
+
+      @Override
+      public boolean hasNext() {
+	if (m_Finished)
+	  return false;
+	try {
+	  while (m_Next == null) {
+	    m_Next = readLine(source);
+	    if (m_Next == null) {
+	      m_Finished = true;
+	      close();
+	      return false;
+	    }
+	    if (m_Next.trim().isEmpty())
+	      m_Next = null;
+	  }
+	}
+	catch (IOException e) {
+	  close();
+	  throw new UncheckedIOException("Failed to read record!", e);
+	}
+	return true;
+      }
+
+      @Override
+      public Dictionary next() {
+	JsonElement	element;
+
+	if (!hasNext())
+	  throw new NoSuchElementException();
+	element = JsonParser.parseString(m_Next);
+	m_Next  = null;
+	if (!element.isJsonObject())
+	  throw new IllegalStateException("Record is not an object: " + element);
+	return new Dictionary(element.getAsJsonObject());
+      }
+    };
+  }
+
+  /**
+   * Returns a stream over the records. Closing the stream closes the response.
+   * Can only be called once per response.
+   *
+   * @return		the stream
+   */
+  public Stream<Dictionary> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(this::close);
+  }
+}
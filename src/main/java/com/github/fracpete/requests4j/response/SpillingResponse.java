@@ -0,0 +1,352 @@
+/*
+ * SpillingResponse.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.requests4j.response;
+
+import com.github.fracpete.requests4j.request.Request;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Response class that keeps the content in memory up to a threshold and
+ * spills it to a temporary file beyond that. The temporary file gets
+ * removed when closing the response or, if the response was never closed,
+ * once the response has been garbage collected.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SpillingResponse
+  extends AbstractResponse
+  implements Closeable {
+
+  /** the default threshold (1MB). */
+  public final static int DEFAULT_THRESHOLD = 1024 * 1024;
+
+  /** for removing temporary files of responses that were never closed. */
+  protected final static Cleaner CLEANER = Cleaner.create();
+
+  /**
+   * Removes the temporary file, without referencing the outer object.
+   */
+  protected static class SpillFile
+    implements Runnable {
+
+    /** the temporary file. */
+    protected File m_File;
+
+    /**
+     * Initializes the state.
+     *
+     * @param file	the temporary file
+     */
+    public SpillFile(File file) {
+      m_File = file;
+    }
+
+    /**
+     * Removes the temporary file.
+     */
+    @Override
+    public void run() {
+      if (!m_File.delete() && m_File.exists())
+        System.err.println("Failed to delete temporary file: " + m_File);
+    }
+  }
+
+  /** the maximum number of bytes to keep in memory. */
+  protected int m_Threshold;
+
+  /** the directory for the temporary file, null for default. */
+  protected File m_TempDir;
+
+  /** the in-memory content. */
+  protected byte[] m_Memory;
+
+  /** the temporary file, null if not spilled. */
+  protected File m_SpillFile;
+
+  /** for removing the temporary file. */
+  protected Cleaner.Cleanable m_Cleanable;
+
+  /** the number of bytes received. */
+  protected long m_Length;
+
+  /**
+   * Initializes the response with the default threshold.
+   *
+   * @see #DEFAULT_THRESHOLD
+   */
+  public SpillingResponse() {
+    this(DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Initializes the response.
+   *
+   * @param threshold	the maximum number of bytes to keep in memory
+   */
+  public SpillingResponse(int threshold) {
+    this(threshold, null);
+  }
+
+  /**
+   * Initializes the response.
+   *
+   * @param threshold	the maximum number of bytes to keep in memory
+   * @param tempDir	the directory for the temporary file, null for default
+   */
+  public SpillingResponse(int threshold, File tempDir) {
+    super();
+    if (threshold < 0)
+      threshold = 0;
+    m_Threshold = threshold;
+    m_TempDir   = tempDir;
+    m_Memory    = new byte[0];
+    m_SpillFile = null;
+    m_Length    = 0;
+  }
+
+  /**
+   * Returns the maximum number of bytes to keep in memory.
+   *
+   * @return		the threshold
+   */
+  public int threshold() {
+    return m_Threshold;
+  }
+
+  /**
+   * Initializes the response object.
+   *
+   * @param response		the response
+   */
+  @Override
+  public void init(okhttp3.Response response) {
+    super.init(response);
+
+    if (!Request.isRedirect(response.code())) {
+      close();
+      if (response.body() != null) {
+        try {
+          readBody(response.body().byteStream(), response.body().contentLength());
+        }
+        catch (Exception e) {
+          System.err.println("Failed to read response body!");
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the body, spilling to disk once the threshold has been exceeded.
+   *
+   * @param in			the stream to read from
+   * @param contentLength	the content length, -1 if unknown
+   * @throws IOException	if reading/writing fails
+   */
+  protected void readBody(InputStream in, long contentLength) throws IOException {
+    byte[]		buffer;
+    int			length;
+    int			read;
+    OutputStream	out;
+
+    // in memory
+    if ((contentLength >= 0) && (contentLength <= m_Threshold))
+      buffer = new byte[(int) contentLength];
+    else
+      buffer = new byte[Math.min(m_Threshold, BasicResponse.CHUNK_SIZE)];
+    length = 0;
+    while (true) {
+      if (length == buffer.length) {
+        if ((length == m_Threshold) || (length == contentLength))
+          break;
+        buffer = Arrays.copyOf(buffer, (int) Math.min(m_Threshold, Math.max((long) length * 2, BasicResponse.CHUNK_SIZE)));
+      }
+      read = in.read(buffer, length, buffer.length - length);
+      if (read == -1) {
+        m_Memory = (length == buffer.length) ? buffer : Arrays.copyOf(buffer, length);
+        m_Length = length;
+        return;
+      }
+      length += read;
+    }
+
+    // check whether the stream is at its end
+    read = in.read();
+    if (read == -1) {
+      m_Memory = buffer;
+      m_Length = length;
+      return;
+    }
+
+    // spill to disk
+    m_SpillFile = File.createTempFile("requests4j-", ".tmp", m_TempDir);
+    m_Cleanable = CLEANER.register(this, new SpillFile(m_SpillFile));
+    out         = new BufferedOutputStream(new FileOutputStream(m_SpillFile), BasicResponse.CHUNK_SIZE);
+    try {
+      out.write(buffer, 0, length);
+      out.write(read);
+      m_Length = length + 1;
+      buffer   = new byte[BasicResponse.CHUNK_SIZE];
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        m_Length += read;
+      }
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns whether the body has been spilled to disk.
+   *
+   * @return		true if spilled
+   */
+  public boolean isSpilled() {
+    return (m_SpillFile != null);
+  }
+
+  /**
+   * Returns the temporary file the body got spilled to.
+   *
+   * @return		the file, null if not spilled
+   */
+  public File spillFile() {
+    return m_SpillFile;
+  }
+
+  /**
+   * Returns the length of the body.
+   *
+   * @return		the number of bytes
+   */
+  public long bodyLength() {
+    return m_Length;
+  }
+
+  /**
+   * Returns a stream over the body, either from memory or the temporary file.
+   *
+   * @return		the stream
+   * @throws IOException	if opening the temporary file fails
+   */
+  public InputStream bodyStream() throws IOException {
+    if (isSpilled())
+      return new FileInputStream(m_SpillFile);
+    else
+      return new ByteArrayInputStream(m_Memory);
+  }
+
+  /**
+   * Returns a copy of the body. If spilled, the data gets read from disk.
+   *
+   * @return		the body
+   * @throws UncheckedIOException	if reading the temporary file fails
+   */
+  public byte[] body() {
+    if (!isSpilled())
+      return m_Memory.clone();
+    if (m_Length > BasicResponse.MAX_ARRAY_SIZE)
+      throw new IllegalStateException("Response body too large for memory: " + m_Length);
+    try {
+      return Files.readAllBytes(m_SpillFile.toPath());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to read spilled body from: " + m_SpillFile, e);
+    }
+  }
+
+  /**
+   * Returns the body as text (UTF-8).
+   *
+   * @return		the text
+   * @throws IOException	if decoding or reading the temporary file fails
+   */
+  public String text() throws IOException {
+    return text("UTF-8");
+  }
+
+  /**
+   * Returns the body as text using the specified encoding.
+   *
+   * @param encoding 	the encoding to use
+   * @return		the text
+   * @throws IOException	if decoding or reading the temporary file fails
+   */
+  public String text(String encoding) throws IOException {
+    if (!isSpilled())
+      return new String(m_Memory, encoding);
+    try {
+      return new String(body(), encoding);
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Writes the received body bytes to the specified file.
+   *
+   * @param filename	the file to write to
+   * @throws IOException	if writing fails
+   */
+  public void saveBody(String filename) throws IOException {
+    saveBody(new File(filename));
+  }
+
+  /**
+   * Writes the received body bytes to the specified file.
+   *
+   * @param file	the file to write to
+   * @throws IOException	if writing fails
+   */
+  public void saveBody(File file) throws IOException {
+    if (isSpilled())
+      Files.copy(m_SpillFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    else
+      Files.write(file.toPath(), m_Memory, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /**
+   * Removes the temporary file, if any, and discards the body.
+   */
+  @Override
+  public void close() {
+    if (m_SpillFile != null) {
+      m_Cleanable.clean();
+      m_Cleanable = null;
+      m_SpillFile = null;
+    }
+    m_Memory = new byte[0];
+    m_Length = 0;
+  }
+
+  /**
+   * Outputs a short description of the response.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return super.toString()
+      + ", body length: " + bodyLength()
+      + ", spilled: " + isSpilled();
+  }
+}